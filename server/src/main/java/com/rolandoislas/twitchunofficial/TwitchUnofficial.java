@@ -11,6 +11,7 @@ import com.rolandoislas.twitchunofficial.util.AuthUtil;
 import com.rolandoislas.twitchunofficial.util.DatabaseUtil;
 import com.rolandoislas.twitchunofficial.util.GoogleStorage;
 import com.rolandoislas.twitchunofficial.util.Logger;
+import com.rolandoislas.twitchunofficial.util.StringUtil;
 import com.rolandoislas.twitchunofficial.util.admin.TwitchM3U8Server;
 import com.rolandoislas.twitchunofficial.util.admin.TwitchedAdminServer;
 import com.rolandoislas.twitchunofficial.util.admin.TwitchedGenHashServer;
@@ -24,6 +25,7 @@ import static spark.Spark.path;
 import static spark.Spark.port;
 import static spark.Spark.post;
 import static spark.Spark.staticFiles;
+import static spark.Spark.threadPool;
 
 public class TwitchUnofficial {
 
@@ -51,6 +53,12 @@ public class TwitchUnofficial {
         catch (NumberFormatException e) {
             Logger.warn("Failed to parse PORT env var: %s", portString);
         }
+        // Request threads
+        int maxThreads = (int) StringUtil.parseLong(System.getenv().getOrDefault("MAX_THREADS", "200"));
+        if (maxThreads <= 0) {
+            Logger.warn("Failed to parse MAX_THREADS env var");
+            maxThreads = 200;
+        }
         // Redis address
         String redisUrlEnv = System.getenv("REDIS_URL_ENV");
         String redisUrlEnvName = redisUrlEnv == null || redisUrlEnv.isEmpty() ? "REDIS_URL" : redisUrlEnv;
@@ -86,9 +94,10 @@ public class TwitchUnofficial {
         }
         // Set values
         port(port);
+        threadPool(maxThreads);
         staticFiles.location("/static/");
         staticFiles.expireTime(604800); // One Week cache
-        TwitchUnofficial.cache = new ApiCache(redisServer);
+        TwitchUnofficial.cache = new ApiCache(redisServer, maxThreads);
         TwitchUnofficialApi.init(twitchClientId, twitchClientSecret);
         DatabaseUtil.setServer(sqlServer);
         storage = new GoogleStorage(cache);
@@ -156,6 +165,7 @@ public class TwitchUnofficial {
             path("/dev", () -> {
                 get("/log", TwitchedApi::logGet);
                 get("/stall", TwitchedApi::getStall);
+                get("/cache", TwitchedApi::getCacheStats);
             });
             //noinspection CodeBlock2Expr
             path("/ad", () -> {
@@ -5,24 +5,22 @@
 
 package com.rolandoislas.twitchunofficial;
 
-import com.goebl.david.Response;
-import com.goebl.david.Webb;
-import com.goebl.david.WebbException;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import com.rolandoislas.twitchunofficial.data.annotation.Cached;
 import com.rolandoislas.twitchunofficial.data.annotation.NotCached;
 import com.rolandoislas.twitchunofficial.data.model.CachedStreams;
+import com.rolandoislas.twitchunofficial.data.model.CachedValue;
 import com.rolandoislas.twitchunofficial.data.model.FollowQueue;
 import com.rolandoislas.twitchunofficial.data.model.FollowedGamesWithRate;
-import com.rolandoislas.twitchunofficial.data.model.Id;
+import com.rolandoislas.twitchunofficial.data.model.MasterPlaylist;
 import com.rolandoislas.twitchunofficial.data.model.Playlist;
 import com.rolandoislas.twitchunofficial.data.model.QueueItem;
-import com.rolandoislas.twitchunofficial.data.model.StreamQuality;
+import com.rolandoislas.twitchunofficial.data.model.StreamQualityRule;
 import com.rolandoislas.twitchunofficial.data.model.StreamStatusQueue;
 import com.rolandoislas.twitchunofficial.data.model.TwitchCredentials;
 import com.rolandoislas.twitchunofficial.data.model.UsersWithRate;
@@ -33,11 +31,11 @@ import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.FollowList
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Game;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.GameList;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.GameViewComparator;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.IndexedStreams;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Pagination;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Stream;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.StreamList;
-import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.StreamUtil;
-import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.StreamViewComparator;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.TopStreams;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.User;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.UserList;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.UserName;
@@ -49,11 +47,26 @@ import com.rolandoislas.twitchunofficial.data.model.json.twitch.kraken.FollowedG
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.kraken.Preview;
 import com.rolandoislas.twitchunofficial.util.ApiCache;
 import com.rolandoislas.twitchunofficial.util.AuthUtil;
+import com.rolandoislas.twitchunofficial.util.BatchLoader;
+import com.rolandoislas.twitchunofficial.util.CacheRefresher;
 import com.rolandoislas.twitchunofficial.util.FollowsCacher;
 import com.rolandoislas.twitchunofficial.util.HeaderUtil;
+import com.rolandoislas.twitchunofficial.util.HlsWarmer;
+import com.rolandoislas.twitchunofficial.util.JsonResponse;
+import com.rolandoislas.twitchunofficial.util.KeyedLock;
+import com.rolandoislas.twitchunofficial.util.LiveStreamIndex;
 import com.rolandoislas.twitchunofficial.util.Logger;
+import com.rolandoislas.twitchunofficial.util.NearCache;
 import com.rolandoislas.twitchunofficial.util.NotFoundException;
+import com.rolandoislas.twitchunofficial.util.RateLimitGovernor;
+import com.rolandoislas.twitchunofficial.util.SingleFlight;
+import com.rolandoislas.twitchunofficial.util.StreamQualityTable;
 import com.rolandoislas.twitchunofficial.util.StringUtil;
+import com.rolandoislas.twitchunofficial.util.http.UpstreamException;
+import com.rolandoislas.twitchunofficial.util.http.UpstreamRequest;
+import com.rolandoislas.twitchunofficial.util.http.UpstreamResponse;
+import com.rolandoislas.twitchunofficial.util.http.UpstreamTemplate;
+import com.rolandoislas.twitchunofficial.util.json.ModelTypeAdapterFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.artifact.versioning.ComparableVersion;
 import org.jetbrains.annotations.Contract;
@@ -65,6 +78,7 @@ import spark.Spark;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -73,12 +87,24 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.WeakHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -104,7 +130,21 @@ public class TwitchUnofficialApi {
     public static Gson gson;
     private static Thread followsThread;
     private static TwitchCredentials twitchCredentials;
-    private static final Map<String, ReentrantLock> hlsLocks = Collections.synchronizedMap(new WeakHashMap<>());
+    static final KeyedLock hlsLocks = new KeyedLock();
+    static SingleFlight singleFlight;
+    static CacheRefresher cacheRefresher;
+    static RateLimitGovernor rateLimitGovernor;
+    private static ThreadPoolExecutor followStreamsExecutor;
+    static LiveStreamIndex liveStreamIndex;
+    private static Thread liveIndexThread;
+    static BatchLoader<User> userLoader;
+    static BatchLoader<Game> gameLoader;
+    private static long batchLoadTimeout;
+    static NearCache<String> filteredPlaylists;
+    static StreamQualityTable streamQualityTable;
+    private static Thread streamQualityThread;
+    static HlsWarmer hlsWarmer;
+    private static Thread hlsWarmThread;
     private static long lastAppTokenFetch = 0;
     private static int appTokenFetchFailures = 0;
 
@@ -143,6 +183,29 @@ public class TwitchUnofficialApi {
             unauthorized();
     }
 
+    /**
+     * Get a page set with a soft timeout from the cache or load it
+     * Stale pages are returned immediately and refreshed in the background. Pages are sent with an ETag and
+     * requests with a matching If-None-Match header are answered with 304 and no body.
+     * @param request request
+     * @param response response
+     * @param requestId cache key
+     * @param cachedResponse value returned by ApiCache#getWithSoftTimeout for the key
+     * @param loader loads the page and caches it with ApiCache#setWithSoftTimeout
+     * @return page
+     */
+    @Nullable
+    private static String getStaleWhileRevalidate(Request request, spark.Response response, String requestId,
+                                                  CachedValue cachedResponse, Supplier<String> loader) {
+        if (!cachedResponse.isNotModified() && cachedResponse.getValue() == null)
+            return HeaderUtil.withETag(request, response, singleFlight.executeDistributed(requestId, loader));
+        if (cachedResponse.isStale())
+            cacheRefresher.refresh(requestId, () -> singleFlight.execute(requestId, loader));
+        if (HeaderUtil.checkNotModified(request, response, cachedResponse.getETag()))
+            return "";
+        return cachedResponse.getValue();
+    }
+
     /**
      * Get stream HLS m3u8 links
      * @param request request
@@ -220,19 +283,12 @@ public class TwitchUnofficialApi {
         if (username == null || username.isEmpty())
             return null;
         // Check cache
-        String requestId = ApiCache.createKey("hls", username, AuthUtil.hashString(userToken, null));
+        String requestId = getHlsCacheKey(username, userToken);
         boolean shouldLock = userToken != null && !userToken.isEmpty();
-        ReentrantLock lock = null;
-        if (shouldLock) {
-            synchronized (hlsLocks) {
-                lock = hlsLocks.get(requestId);
-                if (lock == null) {
-                    lock = new ReentrantLock();
-                    hlsLocks.put(requestId, lock);
-                }
-            }
-            lock.lock();
-        }
+        if (!shouldLock)
+            hlsWarmer.recordRequest(username);
+        if (shouldLock)
+            hlsLocks.lock(requestId);
         try {
             String cachedResponse = cache.get(requestId);
             if (cachedResponse != null) {
@@ -240,39 +296,14 @@ public class TwitchUnofficialApi {
                 return cachedPlaylist.isEmpty() ? null : cachedPlaylist;
             }
             // Get live data
-
-            // Construct template
-            Webb webb = getWebb();
-            // TODO When the API transitions to Helix the Authentication header will change
-            if (userToken != null)
-                webb = getPrivilegedWebbKraken(userToken);
-
-            // Request channel token
-            Token token = getVideoAccessToken(Token.TYPE.CHANNEL, username, userToken);
-
-            // Request HLS playlist
-            String hlsPlaylistUrl = String.format(API_USHER + "/api/channel/hls/%s.m3u8", username);
-            String playlistString = null;
-            try {
-                Logger.verbose("Rest Request to [%s]", hlsPlaylistUrl);
-                Response<String> webbResponse = webb.get(hlsPlaylistUrl)
-                        .header("Accept", "*/*")
-                        .param("player", "Twitched")
-                        .param("token", token.getToken())
-                        .param("sig", token.getSig())
-                        .param("p", String.valueOf((int) (Math.random() * Integer.MAX_VALUE)))
-                        .param("type", "any")
-                        .param("allow_audio_only", "true")
-                        .param("allow_source", "true")
-                        .ensureSuccess()
-                        .asString();
-                playlistString = webbResponse.getBody();
-            } catch (WebbException e) {
-                if (e.getResponse().getStatusCode() != 404) {
-                    Logger.warn("Request failed: " + e.getMessage());
-                    System.out.println("Request Body: " + String.valueOf(e.getResponse().getErrorBody()));
-                    Logger.exception(e);
-                }
+            String playlistString;
+            if (shouldLock) {
+                playlistString = getHlsPlaylistString(username, userToken);
+            }
+            else {
+                // Coalesce concurrent anonymous requests for the same stream
+                String login = username;
+                playlistString = singleFlight.execute(requestId, () -> getHlsPlaylistString(login, userToken));
             }
 
             // Parse playlist
@@ -280,17 +311,71 @@ public class TwitchUnofficialApi {
                 return null;
             // Cache and return
             // Do not cache playlist if the user token is not set
-            if (userToken != null && !userToken.isEmpty())
+            if (shouldLock)
                 cache.set(requestId, playlistString);
             String cleanedPlaylist = cleanMasterPlaylist(playlistString, fps, quality, model);
             return cleanedPlaylist.isEmpty() ? null : cleanedPlaylist;
         }
         finally {
-            if (shouldLock) {
-                assert lock.isHeldByCurrentThread();
-                lock.unlock();
+            if (shouldLock)
+                hlsLocks.unlock(requestId);
+        }
+    }
+
+    /**
+     * Get the cache key of a raw master playlist
+     * @param username login of the stream
+     * @param userToken token the playlist was requested with - null or empty for anonymous playlists
+     * @return key
+     */
+    @NotCached
+    private static String getHlsCacheKey(String username, @Nullable String userToken) {
+        return ApiCache.createKey("hls", username, AuthUtil.hashString(userToken, null));
+    }
+
+    /**
+     * Request a stream master playlist from Twitch
+     * @param username User name of the stream to fetch.
+     * @param userToken User token of an authenticated user to fetch the stream as.
+     * @return raw master playlist or null if the request failed
+     */
+    @NotCached
+    @Nullable
+    private static String getHlsPlaylistString(String username, @Nullable String userToken) {
+        // Construct template
+        UpstreamTemplate template = getTemplate();
+        // TODO When the API transitions to Helix the Authentication header will change
+        if (userToken != null)
+            template = getPrivilegedTemplateKraken(userToken);
+
+        // Request channel token
+        Token token = getVideoAccessToken(Token.TYPE.CHANNEL, username, userToken);
+
+        // Request HLS playlist
+        String hlsPlaylistUrl = String.format(API_USHER + "/api/channel/hls/%s.m3u8", username);
+        String playlistString = null;
+        try {
+            Logger.verbose("Rest Request to [%s]", hlsPlaylistUrl);
+            UpstreamResponse<String> twitchResponse = template.get(hlsPlaylistUrl)
+                    .header("Accept", "*/*")
+                    .param("player", "Twitched")
+                    .param("token", token.getToken())
+                    .param("sig", token.getSig())
+                    .param("p", String.valueOf((int) (Math.random() * Integer.MAX_VALUE)))
+                    .param("type", "any")
+                    .param("allow_audio_only", "true")
+                    .param("allow_source", "true")
+                    .ensureSuccess()
+                    .asString();
+            playlistString = twitchResponse.getBody();
+        } catch (UpstreamException e) {
+            if (e.getStatusCode() != 404) {
+                Logger.warn("Request failed: " + e.getMessage());
+                System.out.println("Request Body: " + String.valueOf(e.getErrorBody()));
+                Logger.exception(e);
             }
         }
+        return playlistString;
     }
 
     /**
@@ -299,16 +384,17 @@ public class TwitchUnofficialApi {
      */
     public static List<Playlist> getHlsPlaylists(String login) {
         String playlistString = getHlsData(60, "1080", "ATV", null, login);
-        Map<String, Object> parsedPlaylist = playlistStringToList(playlistString);
-        return (List<Playlist>) parsedPlaylist.get("playlists");
+        if (playlistString == null)
+            return new ArrayList<>();
+        return MasterPlaylist.parse(playlistString).getVariants();
     }
 
     /**
      * Log twitch rate limit from response headers
-     * @param response Webb response
+     * @param response upstream response
      * @return amount of request remaining in the request window
      */
-    private static int logTwitchRateLimit(@Nullable Response<?> response) {
+    private static int logTwitchRateLimit(@Nullable UpstreamResponse<?> response) {
         if (response == null)
             return 0;
         String limit = response.getHeaderField("RateLimit-Limit");
@@ -325,6 +411,7 @@ public class TwitchUnofficialApi {
         }
         String remaining = response.getHeaderField("RateLimit-Remaining");
         String reset = response.getHeaderField("RateLimit-Reset");
+        rateLimitGovernor.observe(limit, remaining, reset);
         String log = String.format("Rate Limit:\n\tLimit: %s\n\tRemaining: %s,\n\tReset: %s",
                 limit, remaining, reset);
         Logger.debug(log);
@@ -351,17 +438,17 @@ public class TwitchUnofficialApi {
                 throw new RuntimeException("Invalid type specified");
         }
         String hlsTokenUrl = String.format(API_RAW + url, id);
-        Webb webb = getWebb();
+        UpstreamTemplate template = getTemplate();
         // TODO When the API transitions to Helix the Authentication header will change
         if (userToken != null)
-            webb = getPrivilegedWebbKraken(userToken);
+            template = getPrivilegedTemplateKraken(userToken);
         String tokenJsonString;
         try {
             Logger.verbose( "Rest Request to [%s]", hlsTokenUrl);
-            Response<String> response = webb.get(hlsTokenUrl).ensureSuccess().asString();
+            UpstreamResponse<String> response = template.get(hlsTokenUrl).ensureSuccess().asString();
             tokenJsonString = response.getBody();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.warn("Request failed: " + e.getMessage());
             throw halt(404, "Not found");
         }
@@ -426,10 +513,10 @@ public class TwitchUnofficialApi {
             return cachedPlaylist.isEmpty() ? null : cachedPlaylist;
         }
         // Fetch live data
-        Webb webb = getWebb();
+        UpstreamTemplate template = getTemplate();
         // TODO When the API transitions to Helix the Authentication header will change
         if (userToken != null)
-            webb = getPrivilegedWebbKraken(userToken);
+            template = getPrivilegedTemplateKraken(userToken);
         // Request VOD token
         Token token = getVideoAccessToken(Token.TYPE.VOD, vodId, userToken);
 
@@ -438,7 +525,7 @@ public class TwitchUnofficialApi {
         String playlistString = null;
         try {
             Logger.verbose( "Rest Request to [%s]", hlsPlaylistUrl);
-            Response<String> webbResponse = webb.get(hlsPlaylistUrl)
+            UpstreamResponse<String> twitchResponse = template.get(hlsPlaylistUrl)
                     .header("Accept", "*/*")
                     .param("nauth", token.getToken())
                     .param("nauthsig", token.getSig())
@@ -448,13 +535,13 @@ public class TwitchUnofficialApi {
                     .param("allow_source", "true")
                     .ensureSuccess()
                     .asString();
-            playlistString = webbResponse.getBody();
+            playlistString = twitchResponse.getBody();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
             // Redirect to sub only warning video
-            if (e.getResponse().getStatusCode() == 403) {
+            if (e.getStatusCode() == 403) {
                 response.redirect(SUB_ONLY_VIDEO);
                 return "";
             }
@@ -478,6 +565,8 @@ public class TwitchUnofficialApi {
      * If the playlist could not be parsed the playlist will be returned "raw!" - Gordon Ramsay
      * Quality and FPS will be limited regardless of requested parameters if the Roku model passed is not null and that
      * model cannot perform at that quality.
+     * Cleaned playlists are kept in memory keyed by a hash of the raw playlist and the parameters, so repeated requests
+     * for the same playlist do not load the quality table or parse the playlist again.
      * @param playlistString raw playlist string
      * @param fps limit streams to this fps and lower
      * @param  quality limit streams to the quality or lower
@@ -486,70 +575,21 @@ public class TwitchUnofficialApi {
     @NotCached
     private static String cleanMasterPlaylist(String playlistString, int fps, String quality,
                                               @Nullable String model) {
+        String filteredId = ApiCache.createKey("filtered_playlist",
+                Hashing.murmur3_128().hashString(playlistString, StandardCharsets.UTF_8), model, fps, quality,
+                streamQualityTable.getVersion());
+        String cachedPlaylist = filteredPlaylists.get(filteredId);
+        if (cachedPlaylist != null)
+            return cachedPlaylist;
         // Determine max quality
-        StreamQuality maxQuality = getMaxQualityForModel(quality, fps, model);
-        // Parse lines
-        Map<String, Object> parsedPlaylist = playlistStringToList(playlistString);
-        List<String> playlist = (List<String>) parsedPlaylist.get("lines");
-        List<Playlist> playlists = (List<Playlist>) parsedPlaylist.get("playlists");
+        StreamQualityRule maxQuality = getMaxQualityForModel(quality, fps, model);
         // Add compatible playlists
-        boolean addedPlaylist = false;
-        // Create a sublist of playlists that match or are below the requested quality
-        List<Playlist> playlistsMeetingQuality = new ArrayList<>();
-        for (Playlist stream : playlists)
-            if (maxQuality.meetsQuality(stream) && stream.isVideo())
-                playlistsMeetingQuality.add(stream);
-        // Add streams to the master playlist
-        for (Playlist stream : playlistsMeetingQuality) {
-            if (stream.isVideo()) {
-                playlist.addAll(stream.getLines());
-                addedPlaylist = true;
-            }
-        }
+        String cleanedPlaylist = MasterPlaylist.parse(playlistString).filter(maxQuality);
         // If no playlist were added, add them all
-        if (!addedPlaylist)
-            return playlistString;
-        // Return playlist
-        StringBuilder cleanedPlaylist = new StringBuilder();
-        for (String line : playlist)
-            cleanedPlaylist.append(line).append("\r\n");
-        return cleanedPlaylist.toString();
-    }
-
-    /**
-     * Parses a playlist string into individual streams
-     * @param playlistString raw m3u8 playlist
-     * @return map with the key "lines" set to the header lines of the playlist in a string list
-     * and key "playlists" set to a string array of playlists
-     */
-    public static Map<String, Object> playlistStringToList(@NotNull String playlistString) {
-        List<String> playlist = new ArrayList<>();
-        List<Playlist> playlists = new ArrayList<>();
-        String[] playlistSplit = playlistString.split("\r?\n");
-        for (int lineIndex = 0; lineIndex < playlistSplit.length; lineIndex++) {
-            String line = playlistSplit[lineIndex];
-            // Not media line
-            if (!line.startsWith("#EXT-X-MEDIA")) {
-                playlist.add(line);
-            }
-            // Media line
-            else {
-                // EOF - add line but do not force add others
-                if (lineIndex + 2 >= playlistSplit.length) {
-                    playlist.add(line);
-                }
-                // Add line and two after it to playlists list
-                else {
-                    Playlist stream = new Playlist(line, playlistSplit[lineIndex + 1], playlistSplit[lineIndex + 2]);
-                    playlists.add(stream);
-                    lineIndex += 2;
-                }
-            }
-        }
-        Map<String, Object> map = new HashMap<>();
-        map.put("lines", playlist);
-        map.put("playlists", playlists);
-        return map;
+        if (cleanedPlaylist == null)
+            cleanedPlaylist = playlistString;
+        filteredPlaylists.put(filteredId, cleanedPlaylist);
+        return cleanedPlaylist;
     }
 
     /**
@@ -560,23 +600,9 @@ public class TwitchUnofficialApi {
      * @return largest supported or specified quality
      */
     @NotCached
-    private static StreamQuality getMaxQualityForModel(String quality, int fps, @Nullable String model) {
+    private static StreamQualityRule getMaxQualityForModel(String quality, int fps, @Nullable String model) {
         int requestedQuality = (int) StringUtil.parseLong(quality.replace("p", ""));
-        if (model == null)
-            model = "null";
-        List<StreamQuality> streamQualities = TwitchedApi.getStreamQualities();
-        for (StreamQuality streamQuality : streamQualities) {
-            if (streamQuality.validate() && streamQuality.getModel().equals(model)) {
-                if (fps < 60)
-                    streamQuality.disable60();
-                streamQuality.limitQuality(requestedQuality);
-                return streamQuality;
-            }
-        }
-        // Quality not found in database
-        // Send a sensible 720p 30fps 7mbps default quality
-        return new StreamQuality(model, 7000000, "", true, false, true,
-                false, true, false, true, false, true);
+        return streamQualityTable.getRule(model, fps, requestedQuality);
     }
 
     /**
@@ -586,16 +612,84 @@ public class TwitchUnofficialApi {
      */
     @NotCached
     static void init(String twitchClientId, @Nullable String twitchClientSecret) {
-        TwitchUnofficialApi.gson = new Gson();
+        TwitchUnofficialApi.gson = new GsonBuilder()
+                .registerTypeAdapterFactory(new ModelTypeAdapterFactory())
+                .create();
+        TwitchUnofficialApi.singleFlight = new SingleFlight(cache,
+                Boolean.parseBoolean(System.getenv().getOrDefault("SINGLE_FLIGHT_REDIS", "false")),
+                StringUtil.parseLong(System.getenv().getOrDefault("SINGLE_FLIGHT_TIMEOUT", "5000")));
+        TwitchUnofficialApi.cacheRefresher = new CacheRefresher(cache,
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("CACHE_REFRESH_THREADS", "2")),
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("CACHE_REFRESH_QUEUE", "100")));
+        TwitchUnofficialApi.rateLimitGovernor = new RateLimitGovernor(cache, "helix", RATE_LIMIT_MAX);
+        int followStreamsThreads = Math.max(1,
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("FOLLOW_STREAMS_THREADS", "8")));
+        // Lookups past the queue size are run by the request thread
+        TwitchUnofficialApi.followStreamsExecutor = new ThreadPoolExecutor(followStreamsThreads,
+                followStreamsThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1,
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("FOLLOW_STREAMS_QUEUE", "100")))),
+                runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("Follow Streams Thread");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        long batchWindow = StringUtil.parseLong(System.getenv().getOrDefault("BATCH_LOADER_WINDOW", "10"));
+        int batchThreads = (int) StringUtil.parseLong(System.getenv().getOrDefault("BATCH_LOADER_THREADS", "4"));
+        int batchCacheSize = (int) StringUtil.parseLong(System.getenv().getOrDefault("BATCH_LOADER_CACHE_SIZE",
+                "10000"));
+        long batchCacheTimeout = StringUtil.parseLong(System.getenv().getOrDefault("BATCH_LOADER_CACHE_TIMEOUT",
+                "300")) * 1000;
+        TwitchUnofficialApi.batchLoadTimeout = StringUtil.parseLong(System.getenv().getOrDefault(
+                "BATCH_LOADER_TIMEOUT", "10000"));
+        TwitchUnofficialApi.userLoader = new BatchLoader<>("user", cache::getUsers,
+                TwitchUnofficialApi::fetchUsers, 100, batchWindow, batchThreads, batchCacheSize, batchCacheTimeout);
+        TwitchUnofficialApi.gameLoader = new BatchLoader<>("game", cache::getGames,
+                TwitchUnofficialApi::fetchGames, 100, batchWindow, batchThreads, batchCacheSize, batchCacheTimeout);
+        TwitchUnofficialApi.filteredPlaylists = new NearCache<>(
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("FILTERED_PLAYLIST_CACHE_SIZE", "1000")),
+                StringUtil.parseLong(System.getenv().getOrDefault("FILTERED_PLAYLIST_CACHE_TIMEOUT", "60")) * 1000);
+        TwitchUnofficialApi.streamQualityTable = new StreamQualityTable(cache, TwitchedApi::getStreamQualities,
+                filteredPlaylists::clear);
+        TwitchUnofficialApi.streamQualityThread = new Thread(streamQualityTable);
+        TwitchUnofficialApi.streamQualityThread.setName("Stream Quality Reload Thread");
+        TwitchUnofficialApi.streamQualityThread.setDaemon(true);
+        TwitchUnofficialApi.streamQualityThread.start();
         TwitchUnofficialApi.twitchCredentials = new TwitchCredentials(twitchClientId, twitchClientSecret,
                 getAppToken(twitchClientId, twitchClientSecret));
         if (TwitchUnofficialApi.twitchCredentials.getAppToken() == null)
             Logger.warn("No Oauth token provided. Requests will be rate limited to 30 per minute.");
         // Start background thread
-        TwitchUnofficialApi.followsThread = new Thread(new FollowsCacher());
+        TwitchUnofficialApi.followsThread = new Thread(new FollowsCacher(rateLimitGovernor));
         TwitchUnofficialApi.followsThread.setName("Follows Thread");
         TwitchUnofficialApi.followsThread.setDaemon(true);
         TwitchUnofficialApi.followsThread.start();
+        TwitchUnofficialApi.liveStreamIndex = new LiveStreamIndex(cache, rateLimitGovernor,
+                TwitchUnofficialApi::getLiveStreamPage,
+                StringUtil.parseLong(System.getenv().getOrDefault("LIVE_INDEX_INTERVAL", "300")) * 1000,
+                StringUtil.parseLong(System.getenv().getOrDefault("LIVE_INDEX_MAX_AGE", "600")) * 1000,
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("LIVE_INDEX_MAX_PAGES", "1000")));
+        if (Boolean.parseBoolean(System.getenv().getOrDefault("LIVE_INDEX", "false"))) {
+            TwitchUnofficialApi.liveIndexThread = new Thread(liveStreamIndex);
+            TwitchUnofficialApi.liveIndexThread.setName("Live Index Thread");
+            TwitchUnofficialApi.liveIndexThread.setDaemon(true);
+            TwitchUnofficialApi.liveIndexThread.start();
+        }
+        boolean hlsWarm = Boolean.parseBoolean(System.getenv().getOrDefault("HLS_WARM", "false"));
+        TwitchUnofficialApi.hlsWarmer = new HlsWarmer(cache,
+                login -> getHlsPlaylistString(login, null),
+                login -> getHlsCacheKey(login, null),
+                hlsWarm,
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("HLS_WARM_CHANNELS", "200")),
+                StringUtil.parseLong(System.getenv().getOrDefault("HLS_WARM_INTERVAL", "120")) * 1000,
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("HLS_WARM_TIMEOUT", "300")),
+                (int) StringUtil.parseLong(System.getenv().getOrDefault("HLS_WARM_TRACKED", "10000")));
+        if (hlsWarm) {
+            TwitchUnofficialApi.hlsWarmThread = new Thread(hlsWarmer);
+            TwitchUnofficialApi.hlsWarmThread.setName("HLS Warm Thread");
+            TwitchUnofficialApi.hlsWarmThread.setDaemon(true);
+            TwitchUnofficialApi.hlsWarmThread.start();
+        }
     }
 
     /**
@@ -609,13 +703,13 @@ public class TwitchUnofficialApi {
         if (twitchClientSecret == null || twitchClientSecret.isEmpty())
             return null;
         // Construct template
-        Webb webb = TwitchedApi.getWebb();
+        UpstreamTemplate template = TwitchedApi.getTemplate();
         // Request app token
         String appTokenUrl = API_AUTH + "/oauth2/token";
         String tokenJsonString;
         try {
             Logger.verbose( "Rest Request to [%s]", appTokenUrl);
-            Response<String> response = webb.post(appTokenUrl)
+            UpstreamResponse<String> response = template.post(appTokenUrl)
                     .param("client_id", twitchClientId)
                     .param("client_secret", twitchClientSecret)
                     .param("grant_type", "client_credentials")
@@ -625,7 +719,7 @@ public class TwitchUnofficialApi {
             logTwitchRateLimit(response);
             tokenJsonString = response.getBody();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.warn(StringUtils.repeat("=", 80));
             Logger.warn("Failed to get Twitch app token!");
             Logger.warn(e.getMessage());
@@ -678,7 +772,7 @@ public class TwitchUnofficialApi {
         if (cachedResponse != null)
             return cachedResponse;
         // Request live
-        Webb webb = getWebbKraken();
+        UpstreamTemplate template = getTemplateKraken();
         Map<String, Object> params = new HashMap<>();
         params.put("limit", limit);
         if (cursor != null)
@@ -687,13 +781,13 @@ public class TwitchUnofficialApi {
         try {
             String url = API_KRAKEN + "/communities/top";
             Logger.verbose( "Rest Request to [%s]", url);
-            Response<String> webbResponse = webb.get(url)
+            UpstreamResponse<String> twitchResponse = template.get(url)
                     .params(params)
                     .ensureSuccess()
                     .asString();
-            communities = gson.fromJson(webbResponse.getBody(), CommunityList.class);
+            communities = gson.fromJson(twitchResponse.getBody(), CommunityList.class);
         }
-        catch (WebbException | JsonSyntaxException e) {
+        catch (UpstreamException | JsonSyntaxException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
         }
@@ -765,28 +859,28 @@ public class TwitchUnofficialApi {
         if (name == null && id == null)
             return null;
         // Request live
-        Webb webb = getWebbKraken();
+        UpstreamTemplate template = getTemplateKraken();
         Community community;
         try {
             if (name != null && !name.isEmpty()) {
                 String url = API_KRAKEN + "/communities";
                 Logger.verbose( "Rest Request to [%s]", url);
-                Response<String> webbResponse = webb.get(url)
+                UpstreamResponse<String> twitchResponse = template.get(url)
                         .param("name", name)
                         .ensureSuccess()
                         .asString();
-                community = gson.fromJson(webbResponse.getBody(), Community.class);
+                community = gson.fromJson(twitchResponse.getBody(), Community.class);
             }
             else {
                 String url = API_KRAKEN + "/communities/" + id;
                 Logger.verbose( "Rest Request to [%s]", url);
-                Response<String> webbResponse = webb.get(url)
+                UpstreamResponse<String> twitchResponse = template.get(url)
                         .ensureSuccess()
                         .asString();
-                community = gson.fromJson(webbResponse.getBody(), Community.class);
+                community = gson.fromJson(twitchResponse.getBody(), Community.class);
             }
         }
-        catch (WebbException | JsonSyntaxException e) {
+        catch (UpstreamException | JsonSyntaxException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
             return null;
@@ -801,7 +895,7 @@ public class TwitchUnofficialApi {
      * @return stream json with usernames added to each stream as "user_name"
      */
     @Cached
-    static String getStreamsHelix(Request request, @SuppressWarnings("unused") spark.Response response) {
+    static String getStreamsHelix(Request request, spark.Response response) {
         checkAuth(request);
         // Params
         String after = request.queryParams("after");
@@ -859,7 +953,7 @@ public class TwitchUnofficialApi {
             List<Stream> cachedStreamsList =
                     cachedStreams.getStreams();
             if (cachedStreamsList != null && cachedStreamsList.size() == userIds.size()) {
-                return gson.toJson(cachedStreamsList);
+                return JsonResponse.write(gson, request, response, cachedStreamsList);
             }
         }
         // Check page cache
@@ -876,8 +970,11 @@ public class TwitchUnofficialApi {
         requestParams.add(offset);
         requestParams.add(HeaderUtil.extractVersion(request));
         String requestId = ApiCache.createKey("helix/streams", requestParams);
-        String cachedResponse = cache.get(requestId);
-        if (cachedResponse != null) {
+        ComparableVersion version = HeaderUtil.extractVersion(request);
+        String streamsAfter = after;
+        String streamsFirst = first;
+        CachedValue cachedResponse = cache.getWithSoftTimeout(requestId, HeaderUtil.extractIfNoneMatch(request));
+        if (cachedResponse.getValue() != null || cachedResponse.isNotModified()) {
             // If this is a single stream status, add it to the cacher to update the status when there is time
             if (userIds.size() + userLogins.size() == 1) {
                 if (userIds.size() == 1)
@@ -885,27 +982,32 @@ public class TwitchUnofficialApi {
                 else if (userLogins.size() == 1)
                     addStreamToStatusUpdateQueue(userLogins.get(0), StreamStatusQueue.Type.LOGIN);
             }
-            return cachedResponse;
         }
 
         // Request live
-        List<Stream> streams = getStreams(
-                after,
-                before,
-                community == null ? null : Collections.singletonList(community),
-                first,
-                game == null ? null : Collections.singletonList(game),
-                languages,
-                streamType,
-                userIds,
-                userLogins,
-                HeaderUtil.extractVersion(request)
-        );
+        return getStaleWhileRevalidate(request, response, requestId, cachedResponse, () -> {
+            List<Stream> unnamedStreams = new ArrayList<>();
+            List<Stream> streams = getStreams(
+                    streamsAfter,
+                    before,
+                    community == null ? null : Collections.singletonList(community),
+                    streamsFirst,
+                    game == null ? null : Collections.singletonList(game),
+                    languages,
+                    streamType,
+                    userIds,
+                    userLogins,
+                    version,
+                    unnamedStreams
+            );
 
-        // Cache and return
-        String json = gson.toJson(streams);
-        cache.set(requestId, json);
-        return json;
+            // Cache and return
+            // Streams without resolved names are only returned to this request
+            String json = gson.toJson(streams);
+            if (unnamedStreams.isEmpty())
+                cache.setWithSoftTimeout(requestId, json);
+            return json;
+        });
     }
 
     /**
@@ -927,6 +1029,9 @@ public class TwitchUnofficialApi {
     }
 
     /**
+     * Get streams from the helix end point, collecting the streams whose names could not be resolved
+     * Responses containing unnamed streams should not be cached.
+     * @param unnamedStreams filled with returned streams whose user or game could not be loaded
      * @see TwitchUnofficialApi#getStreams(String, String, List, String, List, List, String, List, List, ComparableVersion, Boolean)
      */
     @NotNull
@@ -941,9 +1046,10 @@ public class TwitchUnofficialApi {
             @Nullable String streamType,
             @Nullable List<String> userIdsParam,
             @Nullable List<String> userLoginsParam,
-            @Nullable ComparableVersion version) {
-        return getStreams(after, before, communities, first, games, languages, streamType, userIdsParam,
-                userLoginsParam, version, true);
+            @Nullable ComparableVersion version,
+            List<Stream> unnamedStreams) {
+        return getStreamsAsync(after, before, communities, first, games, languages, streamType, userIdsParam,
+                userLoginsParam, version, true, null, unnamedStreams).join();
     }
 
     /**
@@ -975,6 +1081,36 @@ public class TwitchUnofficialApi {
             @Nullable List<String> userLoginsParam,
             @Nullable ComparableVersion version,
             @Nullable Boolean shouldFetchLive) {
+        return getStreamsAsync(after, before, communities, first, games, languages, streamType, userIdsParam,
+                userLoginsParam, version, shouldFetchLive, null, null).join();
+    }
+
+    /**
+     * Get streams from the helix end point without holding a thread while the request is in flight
+     * The cache is checked on the calling thread. Failures complete the future with a HaltException.
+     * @param executor executor the response is handled on - null to send the request and handle the response on the
+     *                 calling thread, returning a completed future
+     * @param unnamedStreams filled with returned streams whose user or game could not be loaded - null to not collect
+     *                       them
+     * @return future completed with the streams
+     * @see #getStreams(String, String, List, String, List, List, String, List, List, ComparableVersion, Boolean)
+     */
+    @NotNull
+    @Cached
+    private static CompletableFuture<List<Stream>> getStreamsAsync(
+            @Nullable String after,
+            @Nullable String before,
+            @Nullable List<String> communities,
+            @Nullable String first,
+            @Nullable List<String> games,
+            @Nullable List<String> languages,
+            @Nullable String streamType,
+            @Nullable List<String> userIdsParam,
+            @Nullable List<String> userLoginsParam,
+            @Nullable ComparableVersion version,
+            @Nullable Boolean shouldFetchLive,
+            @Nullable Executor executor,
+            @Nullable List<Stream> unnamedStreams) {
         List<Stream> streams = new ArrayList<>();
         CachedStreams cachedStreams = new CachedStreams();
         if ((userIdsParam != null && userIdsParam.size() > 0) ||
@@ -995,25 +1131,31 @@ public class TwitchUnofficialApi {
                 }
             }
             if (cachedStreams.getMissingIds().size() == 0 && cachedStreams.getMissingLogins().size() == 0)
-                return cachedStreams.getStreams();
+                return CompletableFuture.completedFuture(cachedStreams.getStreams());
             // Some streams are missing
             streams = cachedStreams.getStreams();
-            userIdsParam = cachedStreams.getMissingIds();
+            // Ids the live index knows are offline are not requested
+            // A channel that went live after the sweep passed its page is missing from the index until the next
+            // sweep, so lookups of a single channel always ask the API
+            userIdsParam = allIds.size() > 1 ? liveStreamIndex.removeOffline(cachedStreams.getMissingIds()) :
+                    cachedStreams.getMissingIds();
             userLoginsParam = cachedStreams.getMissingLogins();
+            if (userIdsParam.isEmpty() && userLoginsParam.isEmpty())
+                return CompletableFuture.completedFuture(streams);
         }
 
         // If only cached data is to be returned, do not fetch live
         if (shouldFetchLive != null && !shouldFetchLive)
-            return streams;
+            return CompletableFuture.completedFuture(streams);
 
         // Request live
         // Endpoint
         String requestUrl = String.format("%s/streams", API);
-        Webb webb;
+        UpstreamTemplate template;
         if (getTwitchCredentials().getAppToken() != null)
-            webb = getPrivilegedWebb(getTwitchCredentials().getAppToken());
+            template = getPrivilegedTemplate(getTwitchCredentials().getAppToken());
         else
-            webb = getWebb();
+            template = getTemplate();
         // Parameters
         Map<String, Object> params = new HashMap<>();
         if (after != null)
@@ -1035,38 +1177,85 @@ public class TwitchUnofficialApi {
         if (userLoginsParam != null)
             params.put("user_login", userLoginsParam);
         // REST Request
-        try {
-            Logger.verbose( "Rest Request to [%s]", requestUrl);
-            Response<String> response = webb.get(requestUrl)
-                    .params(params)
-                    .ensureSuccess()
-                    .asString();
-            logTwitchRateLimit(response);
+        Logger.verbose( "Rest Request to [%s]", requestUrl);
+        UpstreamRequest streamsRequest = template.get(requestUrl)
+                .params(params)
+                .rateLimit(rateLimitGovernor)
+                .ensureSuccess();
+        List<Stream> partialStreams = streams;
+        CachedStreams partialCachedStreams = cachedStreams;
+        List<String> requestedIds = userIdsParam;
+        List<String> requestedLogins = userLoginsParam;
+        if (executor == null) {
+            UpstreamResponse<String> response;
             try {
-                StreamList streamList = parseStreamListJson(response.getBody());
-                streams.addAll(streamList.getStreams());
+                response = streamsRequest.asString();
             }
-            catch (JsonSyntaxException | IllegalStateException e) {
+            catch (UpstreamException e) {
+                Logger.warn("Request failed: " + e.getMessage());
                 Logger.exception(e);
                 throw halt(BAD_GATEWAY, e.getMessage());
             }
+            return CompletableFuture.completedFuture(cacheStreamsResponse(response, partialStreams,
+                    partialCachedStreams, requestedIds, requestedLogins, version, unnamedStreams));
+        }
+        return streamsRequest.asStringAsync().handleAsync((response, error) -> {
+            if (error != null) {
+                UpstreamException upstreamException = UpstreamException.from(error);
+                Logger.warn("Request failed: " + upstreamException.getMessage());
+                Logger.exception(upstreamException);
+                throw halt(BAD_GATEWAY, upstreamException.getMessage());
+            }
+            return cacheStreamsResponse(response, partialStreams, partialCachedStreams, requestedIds,
+                    requestedLogins, version, unnamedStreams);
+        }, executor);
+    }
+
+    /**
+     * Add the streams of a helix streams response to streams found in the cache, then cache the requested streams
+     * Requested channels missing from the response are cached as offline.
+     * @param response successful response
+     * @param streams streams found in the cache - the response streams are added to it
+     * @param cachedStreams cache lookup the streams came from
+     * @param userIdsParam requested user ids
+     * @param userLoginsParam requested user logins
+     * @param version twitched version from request
+     * @param unnamedStreams filled with returned streams whose user or game could not be loaded - null to not collect
+     *                       them
+     * @return streams
+     */
+    @NotNull
+    private static List<Stream> cacheStreamsResponse(
+            UpstreamResponse<String> response,
+            List<Stream> streams,
+            CachedStreams cachedStreams,
+            @Nullable List<String> userIdsParam,
+            @Nullable List<String> userLoginsParam,
+            @Nullable ComparableVersion version,
+            @Nullable List<Stream> unnamedStreams) {
+        logTwitchRateLimit(response);
+        try {
+            StreamList streamList = parseStreamListJson(response.getBody());
+            streams.addAll(streamList.getStreams());
         }
-        catch (WebbException e) {
-            Logger.warn("Request failed: " + e.getMessage());
+        catch (JsonSyntaxException | IllegalStateException e) {
             Logger.exception(e);
             throw halt(BAD_GATEWAY, e.getMessage());
         }
 
         // Add user names and game names to data
-        addNamesToStreams(streams, version);
+        List<Stream> streamsWithoutNames = addNamesToStreams(streams, version);
+        if (unnamedStreams != null)
+            unnamedStreams.addAll(streamsWithoutNames);
         addEncryptedStatusToStreams(streams);
 
         // Cache streams
         ArrayList<Stream> offlineAndOnlineStreams =
                 new ArrayList<>(streams);
+        IndexedStreams indexedStreams = new IndexedStreams(streams);
         if (userIdsParam != null) {
             for (String userId : userIdsParam) {
-                if (!StreamUtil.streamListContainsId(streams, userId)) {
+                if (!indexedStreams.containsId(userId)) {
                     Stream stream =
                             new Stream();
                     stream.setUserId(userId);
@@ -1078,7 +1267,7 @@ public class TwitchUnofficialApi {
         }
         if (userLoginsParam != null) {
             for (String userLogin : userLoginsParam) {
-                if (!StreamUtil.streamListContainsLogin(streams, userLogin)) {
+                if (!indexedStreams.containsLogin(userLogin)) {
                     Stream stream =
                             new Stream();
                     stream.setUserId("");
@@ -1089,12 +1278,64 @@ public class TwitchUnofficialApi {
             }
         }
         // Cache ensuring cached streams are not recached
-        offlineAndOnlineStreams.removeAll(cachedStreams.getStreams());
+        // Streams without resolved names are only returned to this request
+        Set<Stream> cachedStreamSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        cachedStreamSet.addAll(cachedStreams.getStreams());
+        cachedStreamSet.addAll(streamsWithoutNames);
+        offlineAndOnlineStreams.removeIf(cachedStreamSet::contains);
         cache.cacheStreams(offlineAndOnlineStreams);
 
         return streams;
     }
 
+    /**
+     * Get a page of all live streams for the live index and cache the streams
+     * @param after cursor
+     * @return stream list or null if the request failed
+     */
+    @Nullable
+    @NotCached
+    private static StreamList getLiveStreamPage(@Nullable String after) {
+        // Endpoint
+        String requestUrl = String.format("%s/streams", API);
+        UpstreamTemplate template;
+        if (getTwitchCredentials().getAppToken() != null)
+            template = getPrivilegedTemplate(getTwitchCredentials().getAppToken());
+        else
+            template = getTemplate();
+        // Parameters
+        Map<String, Object> params = new HashMap<>();
+        params.put("first", "100");
+        if (after != null)
+            params.put("after", after);
+        // REST Request
+        StreamList streamList;
+        try {
+            Logger.verbose( "Rest Request to [%s]", requestUrl);
+            UpstreamResponse<String> response = template.get(requestUrl)
+                    .params(params)
+                    .rateLimit(rateLimitGovernor)
+                    .ensureSuccess()
+                    .asString();
+            logTwitchRateLimit(response);
+            streamList = parseStreamListJson(response.getBody());
+        }
+        catch (UpstreamException | JsonSyntaxException | IllegalStateException e) {
+            Logger.warn("Request failed: " + e.getMessage());
+            Logger.exception(e);
+            return null;
+        }
+        if (streamList.getStreams() == null)
+            return null;
+        Set<Stream> unnamedStreams = Collections.newSetFromMap(new IdentityHashMap<>());
+        unnamedStreams.addAll(addNamesToStreams(streamList.getStreams()));
+        addEncryptedStatusToStreams(streamList.getStreams());
+        ArrayList<Stream> namedStreams = new ArrayList<>(streamList.getStreams());
+        namedStreams.removeIf(unnamedStreams::contains);
+        cache.cacheStreams(namedStreams);
+        return streamList;
+    }
+
     /**
      * Sets streams encrypted status to true for stream that require widevine
      * TODO Poll the GQL Twitch endpoint to determine if the stream is encrypted
@@ -1114,7 +1355,7 @@ public class TwitchUnofficialApi {
 
     /**
      * Parse a stream list json object from Twitch
-     * - The user_name field is removed
+     * - The user_name field is skipped by the stream type adapter
      * @param body json objet
      * @return stream list
      * @throws JsonSyntaxException gson failure
@@ -1122,17 +1363,10 @@ public class TwitchUnofficialApi {
      */
     @NotNull
     private static StreamList parseStreamListJson(String body) throws JsonSyntaxException, IllegalStateException {
-        JsonObject streamListJsonObject = gson.fromJson(body, JsonObject.class);
-        if (streamListJsonObject.has("data")) {
-            JsonArray streamListJsonArray = streamListJsonObject.get("data").getAsJsonArray();
-            for (JsonElement streamElement : streamListJsonArray) {
-                JsonObject streamObject = streamElement.getAsJsonObject();
-                if (streamObject.has("user_name"))
-                    streamObject.remove("user_name");
-            }
-            return gson.fromJson(streamListJsonObject.toString(), StreamList.class);
-        }
-        throw new JsonSyntaxException("Stream list object failed to parse");
+        StreamList streamList = gson.fromJson(body, StreamList.class);
+        if (streamList == null || streamList.getStreams() == null)
+            throw new JsonSyntaxException("Stream list object failed to parse");
+        return streamList;
     }
 
     /**
@@ -1162,17 +1396,20 @@ public class TwitchUnofficialApi {
      * @see TwitchUnofficialApi#addNamesToStreams(List, ComparableVersion)
      */
     @NotCached
-    private static void addNamesToStreams(List<Stream>
+    private static List<Stream> addNamesToStreams(List<Stream>
                                                   streams) {
-        addNamesToStreams(streams, null);
+        return addNamesToStreams(streams, null);
     }
 
     /**
      * Add user names and game names to a list of streams
+     * Users and games that could not be resolved are left without names instead of failing the request. Streams
+     * missing names should not be cached.
      * @param streams stream list
+     * @return streams whose user or game could not be resolved
      */
     @NotCached
-    private static void addNamesToStreams(List<Stream>
+    private static List<Stream> addNamesToStreams(List<Stream>
                                                       streams, @Nullable ComparableVersion version) {
         List<String> gameIds = new ArrayList<>();
         List<String> userIds = new ArrayList<>();
@@ -1180,39 +1417,24 @@ public class TwitchUnofficialApi {
             userIds.add(stream.getUserId());
             gameIds.add(stream.getGameId());
         }
-        Map<String, User> users;
-        try {
-            users = getCachedUsers(userIds);
-        }
-        catch (HaltException | WebbException e) {
-            Logger.exception(e);
-            users = new HashMap<>();
-        }
-        Map<String, String> gameNames;
-        try {
-            int gameIdsCount = 0;
-            for (String gameId : gameIds)
-                if (gameId != null && !gameId.isEmpty())
-                    gameIdsCount++;
-            if (gameIdsCount > 0)
-                gameNames = getGameNames(gameIds);
-            else
-                gameNames = new HashMap<>();
-        }
-        catch (HaltException | WebbException e) {
-            Logger.exception(e);
-            gameNames = new HashMap<>();
-        }
+        Map<String, User> users = userLoader.load(userIds, batchLoadTimeout);
+        gameIds.removeIf(gameId -> gameId == null || gameId.isEmpty());
+        Map<String, Game> games = gameIds.isEmpty() ? new HashMap<>() : gameLoader.load(gameIds, batchLoadTimeout);
+        List<Stream> unnamedStreams = new ArrayList<>();
         for (Stream stream : streams) {
             User user = users.get(stream.getUserId());
+            Game game = games.get(stream.getGameId());
+            if (user == null || (game == null && stream.getGameId() != null && !stream.getGameId().isEmpty()))
+                unnamedStreams.add(stream);
             boolean shouldSendLogin = version == null || version.compareTo(new ComparableVersion("1.4.2400")) != 0;
             stream.setUserName(user == null || user.getDisplayName() == null || user.getDisplayName().isEmpty() ||
                     user.getLogin() == null || user.getLogin().isEmpty() ?
                     new UserName("" , "") :
                     new UserName(shouldSendLogin ? user.getLogin() : "", user.getDisplayName()));
-            String gameName = gameNames.get(stream.getGameId());
+            String gameName = game == null ? null : game.getName();
             stream.setGameName(gameName == null ? "" : gameName);
         }
+        return unnamedStreams;
     }
 
     /**
@@ -1221,47 +1443,47 @@ public class TwitchUnofficialApi {
      * @return rest template with bearer token
      */
     @NotCached
-    private static Webb getPrivilegedWebb(String oauthToken) {
-        Webb webb = getWebb();
-        webb.setDefaultHeader("Authorization", String.format("Bearer %s", oauthToken));
-        return webb;
+    private static UpstreamTemplate getPrivilegedTemplate(String oauthToken) {
+        UpstreamTemplate template = getTemplate();
+        template.setDefaultHeader("Authorization", String.format("Bearer %s", oauthToken));
+        return template;
     }
 
     /**
-     * Get a webb instance with the oauth token added as an authorization token
+     * Get a template instance with the oauth token added as an authorization token
      * @param oauthToken token
-     * @return webb instance
+     * @return template instance
      */
     @NotCached
     @Deprecated
-    private static Webb getPrivilegedWebbKraken(String oauthToken) {
-        Webb webb = getWebbKraken();
-        webb.setDefaultHeader("Authorization", String.format("OAuth %s", oauthToken));
-        return webb;
+    private static UpstreamTemplate getPrivilegedTemplateKraken(String oauthToken) {
+        UpstreamTemplate template = getTemplateKraken();
+        template.setDefaultHeader("Authorization", String.format("OAuth %s", oauthToken));
+        return template;
     }
 
     /**
-     * Get a webb instance with client id and Twitch v5 API accept header
-     * @return webb instance
+     * Get a template instance with client id and Twitch v5 API accept header
+     * @return template instance
      */
     @NotCached
     @Deprecated
-    private static Webb getWebbKraken() {
-        Webb webb = getWebb();
-        webb.setDefaultHeader("Accept", "application/vnd.twitchtv.v5+json");
-        return webb;
+    private static UpstreamTemplate getTemplateKraken() {
+        UpstreamTemplate template = getTemplate();
+        template.setDefaultHeader("Accept", "application/vnd.twitchtv.v5+json");
+        return template;
     }
 
     /**
-     * Get a generic Webb template with twitch client ID
+     * Get a generic rest template with twitch client ID
      * @return rest template with client id
      */
     @NotCached
-    private static Webb getWebb() {
-        Webb webb = TwitchedApi.getWebb();
-        webb.setDefaultHeader("Accept", "*/*");
-        webb.setDefaultHeader("Client-ID", getTwitchCredentials().getClientId());
-        return webb;
+    private static UpstreamTemplate getTemplate() {
+        UpstreamTemplate template = TwitchedApi.getTemplate();
+        template.setDefaultHeader("Accept", "*/*");
+        template.setDefaultHeader("Client-ID", getTwitchCredentials().getClientId());
+        return template;
     }
 
     /**
@@ -1289,41 +1511,107 @@ public class TwitchUnofficialApi {
      */
     @Cached
     private static Map<String, @Nullable Game> getCachedGames(List<String> gameIds) {
-        Map<String, String> gamesJson = getCachedJsonForIds(gameIds, Id.GAME, true);
-        Map<String, Game> games = new HashMap<>();
-        for (Map.Entry<String, String> gameJson : gamesJson.entrySet()) {
-            try {
-                Game game = gson.fromJson(gameJson.getValue(), Game.class);
-                games.put(gameJson.getKey(), game);
-            }
-            catch (JsonSyntaxException e) {
-                Logger.exception(e);
-                games.put(gameJson.getKey(), null);
+        return resolveAll(gameIds, gameLoader.load(gameIds, batchLoadTimeout));
+    }
+
+    /**
+     * Request games missing from the cache and cache them
+     * Ids Twitch does not return are cached as missing and returned as empty games.
+     * @param gameIds ids - at most 100
+     * @param executor executor the response is handled on
+     * @return future completed with games(value) and ids(key) or null if the request failed
+     */
+    @NotCached
+    private static CompletableFuture<@Nullable Map<String, Game>> fetchGames(List<String> gameIds,
+                                                                            Executor executor) {
+        return createGamesRequest(gameIds, null).asStringAsync().handleAsync((response, error) -> {
+            if (error != null) {
+                UpstreamException upstreamException = UpstreamException.from(error);
+                Logger.warn("Request failed: " + upstreamException.getMessage());
+                Logger.exception(upstreamException);
+                return null;
             }
-        }
-        return games;
+            List<Game> gamesLive = readGames(response);
+            if (gamesLive == null)
+                return null;
+            Map<String, Game> fetchedGames = new HashMap<>();
+            for (Game game : gamesLive)
+                fetchedGames.put(game.getId(), game);
+            cache.setGames(fetchedGames);
+            // Ensure missing ids are cached
+            List<String> missingIds = new ArrayList<>();
+            for (String gameId : gameIds)
+                if (fetchedGames.get(gameId) == null)
+                    missingIds.add(gameId);
+            cache.setMissingGames(missingIds);
+            for (String missingId : missingIds)
+                fetchedGames.put(missingId, new Game());
+            return fetchedGames;
+        }, executor);
     }
 
     /**
      * Get users for ids, checking the cache first
      * @param userIds ids
+     * @param shouldFetchLive request users missing from the cache from Twitch
      * @return users(value) and ids(key) - missing users may be null
      */
     @Cached
     private static Map<String, @Nullable User> getCachedUsers(List<String> userIds, boolean shouldFetchLive) {
-        Map<String, String> usersJson = getCachedJsonForIds(userIds, Id.USER, shouldFetchLive);
-        Map<String, User> users = new HashMap<>();
-        for (Map.Entry<String, String> userJson : usersJson.entrySet()) {
-            try {
-                User user = gson.fromJson(userJson.getValue(), User.class);
-                users.put(userJson.getKey(), user);
-            }
-            catch (JsonSyntaxException e) {
-                Logger.exception(e);
-                users.put(userJson.getKey(), null);
+        // If live data should not be fetched, return what was found
+        if (!shouldFetchLive)
+            return userLoader.getCached(userIds);
+        return resolveAll(userIds, userLoader.load(userIds, batchLoadTimeout));
+    }
+
+    /**
+     * Request users missing from the cache and cache them
+     * Ids Twitch does not return are cached as missing and returned as empty users.
+     * @param userIds ids - at most 100
+     * @param executor executor the response is handled on
+     * @return future completed with users(value) and ids(key) or null if the request failed
+     */
+    @NotCached
+    private static CompletableFuture<@Nullable Map<String, User>> fetchUsers(List<String> userIds,
+                                                                            Executor executor) {
+        return createUsersRequest(userIds, null, null).asStringAsync().handleAsync((response, error) -> {
+            if (error != null) {
+                UpstreamException upstreamException = UpstreamException.from(error);
+                Logger.warn("Request failed: " + upstreamException.getMessage());
+                Logger.exception(upstreamException);
+                return null;
             }
-        }
-        return users;
+            List<User> usersLive = readUsers(response).getUsers();
+            if (usersLive == null)
+                return null;
+            Map<String, User> fetchedUsers = new HashMap<>();
+            for (User user : usersLive)
+                fetchedUsers.put(user.getId(), user);
+            cache.setUsers(fetchedUsers);
+            // Ensure missing ids are cached
+            List<String> missingIds = new ArrayList<>();
+            for (String userId : userIds)
+                if (fetchedUsers.get(userId) == null)
+                    missingIds.add(userId);
+            cache.setMissingUsers(missingIds);
+            for (String missingId : missingIds)
+                fetchedUsers.put(missingId, new User());
+            return fetchedUsers;
+        }, executor);
+    }
+
+    /**
+     * Ensure every id was resolved by a batch loader
+     * @param ids requested ids
+     * @param loaded models returned by the loader
+     * @return models(value) and ids(key)
+     * @throws HaltException bad gateway if an id could not be resolved
+     */
+    private static <T> Map<String, T> resolveAll(List<String> ids, Map<String, T> loaded) {
+        for (String id : ids)
+            if (id != null && !loaded.containsKey(id))
+                throw halt(BAD_GATEWAY, "Bad Gateway: Could not connect to Twitch API");
+        return loaded;
     }
 
     /**
@@ -1335,132 +1623,71 @@ public class TwitchUnofficialApi {
     }
 
     /**
-     * Get user or game json for ids
-     * @param ids user or game id - must be all one type
-     * @param type type of ids
-     * @return map <id, @Nullable json> all ids passed will be returned.
-     *  In the case of the User type, the name string will be a User object as a json(gson) string.
-     *  In the case of the Game type, the string will be a gson serialized game object.
+     * Get games from Twitch API
+     * @param ids id of games to fetch
+     * @return games
      */
-    @Cached
-    private static Map<String, @Nullable String> getCachedJsonForIds(List<String> ids, Id type, boolean shouldFetchLive) {
-        // Get ids in cache
-        Map<String, String> nameIdMap;
-        switch (type) {
-            case USER:
-                nameIdMap = cache.getUserNames(ids);
-                break;
-            case GAME:
-                nameIdMap = cache.getGameNames(ids);
-                break;
-            default:
-                throw new IllegalArgumentException("Id type must be GAME or USER");
+    @Contract("null, null -> fail")
+    @NotCached
+    @Nullable
+    private static List<Game> getGames(@Nullable List<String> ids, @Nullable List<String> names) {
+        try {
+            return readGames(createGamesRequest(ids, names).asString());
         }
-        // If live data should not be fetched, return what was found
-        if (!shouldFetchLive)
-            return nameIdMap;
-        // Find missing ids
-        List<String> missingIds = new ArrayList<>();
-        for (Map.Entry<String, String> nameId : nameIdMap.entrySet())
-            if (nameId.getValue() == null)
-                missingIds.add(nameId.getKey());
-        if (missingIds.size() == 0)
-            return nameIdMap;
-        // Request missing ids
-        if (type.equals(Id.USER)) {
-            for (int idIndex = 0; idIndex < missingIds.size(); idIndex += 100) {
-                List<String> idsSubList = missingIds.subList(idIndex, Math.min(idIndex + 100, missingIds.size()));
-                List<User> users = getUsers(idsSubList, null, null);
-                if (users == null)
-                    throw halt(BAD_GATEWAY, "Bad Gateway: Could not connect to Twitch API");
-                // Store missing ids
-                for (User user : users) {
-                    try {
-                        nameIdMap.put(user.getId(), gson.toJson(user));
-                    } catch (JsonSyntaxException e) {
-                        Logger.exception(e);
-                    }
-                }
-            }
-            // Ensure missing ids are cached
-            for (String missingId : missingIds)
-                if (nameIdMap.get(missingId) == null)
-                    nameIdMap.put(missingId, gson.toJson(new User()));
-            cache.setUsersJson(nameIdMap);
-        }
-        else if (type.equals(Id.GAME)) {
-            for (int idIndex = 0; idIndex < missingIds.size(); idIndex += 100) {
-                List<String> idsSubList = missingIds.subList(idIndex, Math.min(idIndex + 100, missingIds.size()));
-                List<Game> games = getGames(idsSubList, null);
-                if (games == null)
-                    throw halt(BAD_GATEWAY, "Bad Gateway: Could not connect to Twitch API");
-                // Store missing ids
-                for (Game game : games) {
-                    try {
-                        nameIdMap.put(game.getId(), gson.toJson(game));
-                    }
-                    catch (JsonSyntaxException e) {
-                        Logger.exception(e);
-                    }
-                }
-            }
-            // Ensure missing ids are cached
-            for (String missingId : missingIds)
-                if (nameIdMap.get(missingId) == null)
-                    nameIdMap.put(missingId, gson.toJson(new Game()));
-            cache.setGamesJson(nameIdMap);
+        catch (UpstreamException e) {
+            Logger.warn("Request failed: " + e.getMessage());
+            Logger.exception(e);
         }
-        return nameIdMap;
+        return null;
     }
 
     /**
-     * Get games from Twitch API
+     * Create a request for games
      * @param ids id of games to fetch
-     * @return games
+     * @param names names of games to fetch
+     * @return request
      */
     @Contract("null, null -> fail")
     @NotCached
-    @Nullable
-    private static List<Game> getGames(@Nullable List<String> ids, @Nullable List<String> names) {
+    private static UpstreamRequest createGamesRequest(@Nullable List<String> ids, @Nullable List<String> names) {
         if ((ids == null || ids.isEmpty()) && (names == null || names.isEmpty()))
             throw halt(BAD_REQUEST, "Bad request: missing game id or name");
-        // Request live
-        List<Game> games = null;
         // Endpoint
         String requestUrl = String.format("%s/games", API);
-        Webb webb;
+        UpstreamTemplate template;
         if (getTwitchCredentials().getAppToken() != null)
-            webb = getPrivilegedWebb(getTwitchCredentials().getAppToken());
+            template = getPrivilegedTemplate(getTwitchCredentials().getAppToken());
         else
-            webb = getWebb();
+            template = getTemplate();
         // Parameters
         Map<String, Object> params = new HashMap<>();
         if (ids != null)
             params.put("id", ids);
         if (names != null)
             params.put("name", names);
-        // REST Request
-        //noinspection Duplicates
+        Logger.verbose( "Rest Request to [%s]", requestUrl);
+        return template.get(requestUrl)
+                .params(params)
+                .rateLimit(rateLimitGovernor)
+                .ensureSuccess();
+    }
+
+    /**
+     * Parse a games response
+     * @param response successful response
+     * @return games or null if the body could not be parsed
+     */
+    @Nullable
+    private static List<Game> readGames(UpstreamResponse<String> response) {
+        logTwitchRateLimit(response);
         try {
-            Logger.verbose( "Rest Request to [%s]", requestUrl);
-            Response<String> response = webb.get(requestUrl)
-                    .params(params)
-                    .ensureSuccess()
-                    .asString();
-            logTwitchRateLimit(response);
-            try {
-                GameList gameList = gson.fromJson(response.getBody(), GameList.class);
-                games = gameList.getGames();
-            }
-            catch (JsonSyntaxException e) {
-                Logger.exception(e);
-            }
+            GameList gameList = gson.fromJson(response.getBody(), GameList.class);
+            return gameList.getGames();
         }
-        catch (WebbException e) {
-            Logger.warn("Request failed: " + e.getMessage());
+        catch (JsonSyntaxException e) {
             Logger.exception(e);
         }
-        return games;
+        return null;
     }
 
     /**
@@ -1499,45 +1726,14 @@ public class TwitchUnofficialApi {
     public static UsersWithRate getUsersWithRate(@Nullable List<String> userIds, @Nullable List<String> userNames,
                                        @Nullable String token, @Nullable Request request,
                                        @Nullable spark.Response response) {
-        if ((userIds == null || userIds.isEmpty()) && (userNames == null || userNames.isEmpty()) && token == null)
-            throw halt(BAD_REQUEST, "Bad request: missing user id or user name");
-        // Request live
-        List<User> users = null;
-        // Endpoint
-        String requestUrl = String.format("%s/users", API);
-        Webb webb;
-        if (token != null)
-            webb = getPrivilegedWebb(token);
-        else if (getTwitchCredentials().getAppToken() != null)
-            webb = getPrivilegedWebb(getTwitchCredentials().getAppToken());
-        else
-            webb = getWebb();
-        // Parameters
-        Map<String, Object> params = new HashMap<>();
-        if (userIds != null)
-            params.put("id", userIds);
-        if (userNames != null)
-            params.put("login", userNames);
-        int rateLimit = 0;
-        // REST Request
+        UpstreamResponse<String> twitchResponse;
         try {
-            Logger.verbose( "Rest Request to [%s]", requestUrl);
-            Response<String> webbResponse = webb.get(requestUrl)
-                    .params(params)
-                    .ensureSuccess()
-                    .asString();
-            rateLimit = logTwitchRateLimit(webbResponse);
-            try {
-                UserList userList = gson.fromJson(webbResponse.getBody(), UserList.class);
-                users = userList.getUsers();
-            }
-            catch (JsonSyntaxException e) {
-                Logger.exception(e);
-            }
+            twitchResponse = createUsersRequest(userIds, userNames, token).asString();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
+            List<User> users = null;
             // Handle an expired auth token gracefully
-            if (e.getResponse().getStatusCode() == 400 &&
+            if (e.getStatusCode() == 400 &&
                     (userIds == null || userIds.isEmpty()) && (userNames == null || userNames.isEmpty()) &&
                     token != null) {
                 // Redirect to the validate endpoint for versions prior to 1.4
@@ -1553,6 +1749,60 @@ public class TwitchUnofficialApi {
                 Logger.warn("Request failed: " + e.getMessage());
                 Logger.exception(e);
             }
+            return new UsersWithRate(users, 0);
+        }
+        return readUsers(twitchResponse);
+    }
+
+    /**
+     * Create a request for users
+     * @param userIds id to poll
+     * @param userNames name to poll
+     * @param token oauth token to use instead of names or ids. if names or ids are not null, the token is ignored
+     * @return request
+     */
+    @Contract("null, null, null -> fail")
+    @NotCached
+    private static UpstreamRequest createUsersRequest(@Nullable List<String> userIds,
+                                                      @Nullable List<String> userNames, @Nullable String token) {
+        if ((userIds == null || userIds.isEmpty()) && (userNames == null || userNames.isEmpty()) && token == null)
+            throw halt(BAD_REQUEST, "Bad request: missing user id or user name");
+        // Endpoint
+        String requestUrl = String.format("%s/users", API);
+        UpstreamTemplate template;
+        if (token != null)
+            template = getPrivilegedTemplate(token);
+        else if (getTwitchCredentials().getAppToken() != null)
+            template = getPrivilegedTemplate(getTwitchCredentials().getAppToken());
+        else
+            template = getTemplate();
+        // Parameters
+        Map<String, Object> params = new HashMap<>();
+        if (userIds != null)
+            params.put("id", userIds);
+        if (userNames != null)
+            params.put("login", userNames);
+        Logger.verbose( "Rest Request to [%s]", requestUrl);
+        return template.get(requestUrl)
+                .params(params)
+                .rateLimit(token == null ? rateLimitGovernor : null)
+                .ensureSuccess();
+    }
+
+    /**
+     * Parse a users response
+     * @param twitchResponse successful response
+     * @return users and rate limit - users are null if the body could not be parsed or a user did not verify
+     */
+    private static UsersWithRate readUsers(UpstreamResponse<String> twitchResponse) {
+        int rateLimit = logTwitchRateLimit(twitchResponse);
+        List<User> users = null;
+        try {
+            UserList userList = gson.fromJson(twitchResponse.getBody(), UserList.class);
+            users = userList.getUsers();
+        }
+        catch (JsonSyntaxException e) {
+            Logger.exception(e);
         }
         if (users != null) {
             for (User user : users) {
@@ -1641,128 +1891,166 @@ public class TwitchUnofficialApi {
         }
         response.header("Twitch-User-ID", fromId);
         // Get follows
-        List<Stream> streams =
-                getUserFollowedStreamsWithTimeout(fromId, 15000, HeaderUtil.extractVersion(request));
-        // Sort streams
-        streams.sort(new StreamViewComparator().reversed());
-        streams = streams.subList(0, Math.min((int) StringUtil.parseLong(limit), streams.size()));
+        List<Stream> streams = getUserFollowedStreamsWithTimeout(fromId, 15000,
+                (int) StringUtil.parseLong(limit), HeaderUtil.extractVersion(request));
         // Cache and return
-        return gson.toJson(streams);
+        return JsonResponse.write(gson, request, response, streams);
     }
 
     /**
      * Poll the Helix endpoint for all user follows and attempt to get live streams
-     * If the timeout is reached, the fetched streams will be returned and the id will be added to the fetch queue
+     * Streams for a page of follows are requested on the follow streams executor while the next page is fetched.
+     * If the timeout is reached, the fetched streams will be returned, lookups that have not finished are cancelled,
+     * and the id will be added to the fetch queue
+     * Only the live streams with the most viewers are kept, and offline streams are only built for follows needed to
+     * fill the limit.
      * @param fromId id to get follows for
      * @param timeout timeout in milliseconds
+     * @param limit max amount of streams to return
      * @param twitchedVersion twitched version string
-     * @return streams
+     * @return streams ordered from the most to the least viewers - offline streams are last
      */
     @Cached
     private static List<Stream> getUserFollowedStreamsWithTimeout(
-            String fromId, @SuppressWarnings("SameParameterValue") int timeout,
+            String fromId, @SuppressWarnings("SameParameterValue") int timeout, int limit,
             ComparableVersion twitchedVersion) throws HaltException {
-        List<Stream> streams = new ArrayList<>();
+        TopStreams topStreams = new TopStreams(limit);
+        int liveStreamAmount = 0;
         List<String> followIds = new ArrayList<>();
         List<Follow> followsOffline = new ArrayList<>();
+        Set<String> offlineFollowIds = new HashSet<>();
+        Map<Future<List<Stream>>, List<Follow>> streamLookups = new LinkedHashMap<>();
         String pagination = null;
-        long startTime = System.currentTimeMillis();
+        long deadline = System.currentTimeMillis() + timeout;
         boolean hasTime;
         boolean shouldFetchLive = false;
-        do {
-            FollowList userFollows = getUserFollows(pagination,
-                    null, "100", fromId, null, true);
-            if (userFollows == null || userFollows.getFollows() == null)
-                throw halt(SERVER_ERROR, "Failed to connect to Twitch API");
-            pagination = userFollows.getPagination() != null ? userFollows.getPagination().getCursor() : null;
-            followIds.clear();
-            for (Follow follow : userFollows.getFollows())
-                if (follow.getToId() != null)
-                    followIds.add(follow.getToId());
-            if (followIds.size() > 0) {
-                for (int followIndex = 0; followIndex < followIds.size(); followIndex += 100) {
-                    // Check if 10 seconds has passed
-                    hasTime = System.currentTimeMillis() - startTime < timeout;
-                    if (!hasTime)
-                        break;
-                    // Get streams for a sublist of 100 or less followers
-                    List<String> followsSublist = followIds.subList(followIndex,
-                            Math.min(followIds.size(), followIndex + 100));
-                    // Get live data
-                    // Do not fetch if the rate limit is at half and the user follows more than 300 channels
-                    // Allow fetching if the rate limit is at a fourth and the user follows less than or equal to 300
-                    // channels
-                    // TODO send this to a background thread
-                    shouldFetchLive = userFollows.getRateLimitRemaining() > RATE_LIMIT_MAX / 2 ||
-                            (userFollows.getRateLimitRemaining() > RATE_LIMIT_MAX / 4 && userFollows.getTotal() <= 300);
-                    @NotNull List<Stream> streamSublist =
-                            getStreams(null, null, null, "100", null, null,
-                                    null, followsSublist, null, twitchedVersion,
-                                    shouldFetchLive);
-                    // Add streams to array
-                    streams.addAll(streamSublist);
-                    // Add follows to offline list
-                    if (followIds.size() > 0) {
-                        for (String followId : followIds)
-                            for (Follow follow : userFollows.getFollows())
-                                if (followId != null && followId.equals(follow.getToId()) &&
-                                        !followsOffline.contains(follow) &&
-                                        !StreamUtil.streamListContainsId(streamSublist, followId))
-                                    followsOffline.add(follow);
+        try {
+            do {
+                FollowList userFollows = getUserFollows(pagination,
+                        null, "100", fromId, null, true);
+                if (userFollows == null || userFollows.getFollows() == null)
+                    throw halt(SERVER_ERROR, "Failed to connect to Twitch API");
+                pagination = userFollows.getPagination() != null ? userFollows.getPagination().getCursor() : null;
+                followIds = new ArrayList<>();
+                List<Follow> follows = new ArrayList<>();
+                for (Follow follow : userFollows.getFollows()) {
+                    if (follow.getToId() != null) {
+                        followIds.add(follow.getToId());
+                        follows.add(follow);
                     }
+                }
+                // Check if the timeout has passed
+                hasTime = System.currentTimeMillis() < deadline;
+                if (followIds.size() > 0 && hasTime) {
+                    // Get live data
+                    // Users that follow more than 300 channels need many requests, so they are denied live data
+                    // before users with less follows are
+                    // The stream request and the user and game requests it causes take their own tokens
+                    shouldFetchLive = rateLimitGovernor.hasCapacity(userFollows.getTotal() <= 300 ?
+                            RateLimitGovernor.Priority.INTERACTIVE : RateLimitGovernor.Priority.INTERACTIVE_BULK);
                     // Log that live data was not used for a request
                     if (!shouldFetchLive) {
                         Logger.extra("Denied user follow streams request.\n\tReason: Rate limit too low\n" +
-                                "\tRate Limit: %d\n\tTotal Follows: %d", userFollows.getRateLimitRemaining(),
+                                "\tRate Limit: %d\n\tTotal Follows: %d", rateLimitGovernor.getRemaining(),
                                 userFollows.getTotal());
                     }
+                    // Get streams for the page while the next page is fetched
+                    // The lookup thread checks the cache and handles the response, but is not held while the
+                    // request is in flight
+                    List<String> followsSublist = followIds;
+                    boolean fetchLive = shouldFetchLive;
+                    streamLookups.put(CompletableFuture.supplyAsync(() ->
+                            getStreamsAsync(null, null, null, "100", null, null,
+                                    null, followsSublist, null, twitchedVersion,
+                                    fetchLive, followStreamsExecutor, null), followStreamsExecutor)
+                            .thenCompose(streamLookup -> streamLookup), follows);
+                }
+            }
+            while (followIds.size() == 100 && pagination != null && hasTime);
+            // Wait for stream lookups until the timeout
+            for (Map.Entry<Future<List<Stream>>, List<Follow>> streamLookup : streamLookups.entrySet()) {
+                List<Stream> streamSublist;
+                try {
+                    streamSublist = streamLookup.getKey().get(Math.max(0, deadline - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS);
                 }
+                catch (TimeoutException e) {
+                    hasTime = false;
+                    continue;
+                }
+                // Keep the top streams
+                topStreams.addAll(streamSublist);
+                liveStreamAmount += streamSublist.size();
+                // Add follows to offline list
+                IndexedStreams indexedSublist = new IndexedStreams(streamSublist);
+                for (Follow follow : streamLookup.getValue())
+                    if (!indexedSublist.containsId(follow.getToId()) && offlineFollowIds.add(follow.getToId()))
+                        followsOffline.add(follow);
             }
-            // Check if 10 seconds has passed
-            hasTime = System.currentTimeMillis() - startTime < timeout;
         }
-        while (followIds.size() == 100 && pagination != null && hasTime);
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw halt(SERVER_ERROR, "Interrupted");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            Logger.exception(e);
+            throw halt(SERVER_ERROR, "Failed to get streams");
+        }
+        finally {
+            // Lookups that have not started are dropped. Lookups in flight are not interrupted, so they finish in
+            // the background and still cache their streams.
+            for (Future<List<Stream>> streamLookup : streamLookups.keySet())
+                streamLookup.cancel(false);
+        }
+        List<Stream> streams = topStreams.getStreams();
         // Add offline channels to list
         int followsOfflineMaxIndex = Math.min(followsOffline.size(), 500);
         if (followsOfflineMaxIndex == 500)
-            followsOfflineMaxIndex -= streams.size();
-        if (followsOfflineMaxIndex < 0)
-            followsOfflineMaxIndex = 0;
-        followsOffline = followsOffline.subList(0, followsOfflineMaxIndex);
-        if (hasTime && followsOffline.size() > 0) {
-            List<String> followIdsOffline = new ArrayList<>();
-            for (Follow follow : followsOffline)
-                followIdsOffline.add(follow.getToId());
-            Map<String, @Nullable User> offlineUsers = getCachedUsers(followIdsOffline, shouldFetchLive);
-            List<Stream> offlineStreams = new ArrayList<>();
-            for (Map.Entry<String, User> offlineUser : offlineUsers.entrySet()) {
-                if (offlineUser.getValue() == null)
-                    continue;
-                Stream offlineStream =
-                        new Stream();
-                offlineStream.setUserId(offlineUser.getKey());
-                User user = offlineUser.getValue();
-                if (user == null || user.getLogin() == null || user.getDisplayName() == null ||
-                        user.getOfflineImageUrl() == null)
-                    continue;
-                offlineStream.setUserName(new UserName(user.getLogin(), user.getDisplayName()));
-                offlineStream.setThumbnailUrl(user.getOfflineImageUrl()
-                        .replaceAll(IMAGE_SIZE_REGEX, "-{width}x{height}."));
-                offlineStream.setTitle(user.getDescription() == null ? "" : user.getDescription());
-                offlineStream.setViewerCount(user.getViewCount());
-                offlineStream.setGameName("IRL");
-                offlineStream.setGameId("494717");
-                offlineStream.setOnline(false);
-                if (twitchedVersion.compareTo(new ComparableVersion("1.3")) >= 0)
-                    offlineStream.setType("user_follow");
-                else
-                    offlineStream.setType("user");
-                for (Follow follow : followsOffline)
-                    if (follow.getToId().equals(offlineUser.getKey()))
-                        offlineStream.setStartedAt(follow.getFollowedAt());
-                offlineStreams.add(offlineStream);
+            followsOfflineMaxIndex -= liveStreamAmount;
+        followsOfflineMaxIndex = Math.min(followsOfflineMaxIndex, limit - streams.size());
+        if (hasTime && followsOfflineMaxIndex > 0) {
+            // Offline streams are built in follow order until the limit is filled. Follows without complete user
+            // data are skipped.
+            int followIndex = 0;
+            int offlineAmount = 0;
+            while (offlineAmount < followsOfflineMaxIndex && followIndex < followsOffline.size()) {
+                List<Follow> followsSublist = followsOffline.subList(followIndex,
+                        Math.min(followsOffline.size(), followIndex + Math.min(100,
+                                followsOfflineMaxIndex - offlineAmount)));
+                followIndex += followsSublist.size();
+                List<String> followIdsOffline = new ArrayList<>();
+                for (Follow follow : followsSublist)
+                    followIdsOffline.add(follow.getToId());
+                Map<String, @Nullable User> offlineUsers = getCachedUsers(followIdsOffline, shouldFetchLive);
+                for (Follow follow : followsSublist) {
+                    User user = offlineUsers.get(follow.getToId());
+                    if (user == null || user.getLogin() == null || user.getDisplayName() == null ||
+                            user.getOfflineImageUrl() == null)
+                        continue;
+                    Stream offlineStream =
+                            new Stream();
+                    offlineStream.setUserId(follow.getToId());
+                    offlineStream.setUserName(new UserName(user.getLogin(), user.getDisplayName()));
+                    offlineStream.setThumbnailUrl(user.getOfflineImageUrl()
+                            .replaceAll(IMAGE_SIZE_REGEX, "-{width}x{height}."));
+                    offlineStream.setTitle(user.getDescription() == null ? "" : user.getDescription());
+                    offlineStream.setViewerCount(user.getViewCount());
+                    offlineStream.setGameName("IRL");
+                    offlineStream.setGameId("494717");
+                    offlineStream.setOnline(false);
+                    if (twitchedVersion.compareTo(new ComparableVersion("1.3")) >= 0)
+                        offlineStream.setType("user_follow");
+                    else
+                        offlineStream.setType("user");
+                    offlineStream.setStartedAt(follow.getFollowedAt());
+                    streams.add(offlineStream);
+                    offlineAmount++;
+                    if (offlineAmount == followsOfflineMaxIndex)
+                        break;
+                }
             }
-            streams.addAll(offlineStreams);
         }
         // Request offline user names from Redis
         // Time expired - Send the data that was retrieved and add the user id to a background thread that caches
@@ -1844,11 +2132,11 @@ public class TwitchUnofficialApi {
 
         // Endpoint
         String requestUrl = String.format("%s/users/follows", API);
-        Webb webb;
+        UpstreamTemplate template;
         if (getTwitchCredentials().getAppToken() != null)
-            webb = getPrivilegedWebb(getTwitchCredentials().getAppToken());
+            template = getPrivilegedTemplate(getTwitchCredentials().getAppToken());
         else
-            webb = getWebb();
+            template = getTemplate();
         // Parameters
         Map<String, Object> params = new HashMap<>();
         if (after != null)
@@ -1864,8 +2152,9 @@ public class TwitchUnofficialApi {
         // REST Request
         try {
             Logger.verbose( "Rest Request to [%s]", requestUrl);
-            Response<String> response = webb.get(requestUrl)
+            UpstreamResponse<String> response = template.get(requestUrl)
                     .params(params)
+                    .rateLimit(rateLimitGovernor)
                     .ensureSuccess()
                     .asString();
             int rateLimitRemaining = logTwitchRateLimit(response);
@@ -1879,7 +2168,7 @@ public class TwitchUnofficialApi {
                 Logger.exception(e);
             }
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
         }
@@ -1974,7 +2263,7 @@ public class TwitchUnofficialApi {
      */
     @Cached
     @Deprecated
-    static String getSearchKraken(Request request, @SuppressWarnings("unused") spark.Response response) {
+    static String getSearchKraken(Request request, spark.Response response) {
         checkAuth(request);
         // All
         @Nullable String query = request.queryParams("query");
@@ -1988,23 +2277,48 @@ public class TwitchUnofficialApi {
             throw halt(BAD_REQUEST, "Empty query");
         // Check cache
         String requestId = ApiCache.createKey("kraken/search", query, type, limit, offset, hls, live);
-        String cachedResponse = cache.get(requestId);
-        if (cachedResponse != null)
-            return cachedResponse;
+        CachedValue cachedResponse = cache.getWithSoftTimeout(requestId, HeaderUtil.extractIfNoneMatch(request));
+        ComparableVersion version = HeaderUtil.extractVersion(request);
+        return getStaleWhileRevalidate(request, response, requestId, cachedResponse, () -> {
+            AtomicBoolean namesResolved = new AtomicBoolean(true);
+            String json = getSearchKraken(query, type, limit, offset, hls, live, version, namesResolved);
+            if (namesResolved.get())
+                cache.setWithSoftTimeout(requestId, json);
+            return json;
+        });
+    }
+
+    /**
+     * Search on the kraken endpoint
+     * @param query search query
+     * @param type streams, channels, or games
+     * @param limit limit
+     * @param offset offset
+     * @param hls only search streams with hls
+     * @param live only search live games
+     * @param version client version
+     * @param namesResolved set to false if the user or game of a returned stream could not be loaded
+     * @return json
+     */
+    @NotCached
+    @Deprecated
+    private static String getSearchKraken(String query, String type, String limit, String offset, String hls,
+                                          String live, ComparableVersion version, AtomicBoolean namesResolved) {
         // Get live data
         String json;
         // Used by switch case
         ArrayList<String> userIds = new ArrayList<>();
         List<Stream> streamsHelix = new ArrayList<>();
+        List<Stream> unnamedStreams = new ArrayList<>();
         List<Game> games = new ArrayList<>();
-        Webb webb = getWebbKraken();
+        UpstreamTemplate template = getTemplateKraken();
         switch (type) {
             case "streams":
                 List<com.rolandoislas.twitchunofficial.data.model.json.twitch.kraken.Stream> streams = null;
                 try {
                     String url = API_KRAKEN + "/search/streams";
                     Logger.verbose( "Rest Request to [%s]", url);
-                    Response<String> webbResponse = webb.get(url)
+                    UpstreamResponse<String> twitchResponse = template.get(url)
                             .param("query", query)
                             .param("limit", limit)
                             .param("hls", hls)
@@ -2012,11 +2326,11 @@ public class TwitchUnofficialApi {
                             .ensureSuccess()
                             .asString();
                     com.rolandoislas.twitchunofficial.data.model.json.twitch.kraken.StreamList streamList =
-                            gson.fromJson(webbResponse.getBody(),
+                            gson.fromJson(twitchResponse.getBody(),
                                     com.rolandoislas.twitchunofficial.data.model.json.twitch.kraken.StreamList.class);
                     streams = streamList.getStreams();
                 }
-                catch (WebbException | JsonSyntaxException e) {
+                catch (UpstreamException | JsonSyntaxException e) {
                     Logger.warn("Request failed: " + e.getMessage());
                     Logger.exception(e);
                 }
@@ -2035,8 +2349,11 @@ public class TwitchUnofficialApi {
                             null,
                             userIds,
                             null,
-                            HeaderUtil.extractVersion(request)
+                            version,
+                            unnamedStreams
                     );
+                if (!unnamedStreams.isEmpty())
+                    namesResolved.set(false);
                 json = gson.toJson(streamsHelix);
                 break;
             case "channels":
@@ -2045,16 +2362,16 @@ public class TwitchUnofficialApi {
                 try {
                     String url = API_KRAKEN + "/search/channels";
                     Logger.verbose( "Rest Request to [%s]", url);
-                    Response<String> webbResponse = webb.get(url)
+                    UpstreamResponse<String> twitchResponse = template.get(url)
                             .param("query", query)
                             .param("limit", limit)
                             .param("offset", offset)
                             .ensureSuccess()
                             .asString();
-                    ChannelList channelList = gson.fromJson(webbResponse.getBody(), ChannelList.class);
+                    ChannelList channelList = gson.fromJson(twitchResponse.getBody(), ChannelList.class);
                     channels = channelList.getChannels();
                 }
-                catch (WebbException | JsonSyntaxException e) {
+                catch (UpstreamException | JsonSyntaxException e) {
                     Logger.warn("Request failed: " + e.getMessage());
                     Logger.exception(e);
                 }
@@ -2080,8 +2397,11 @@ public class TwitchUnofficialApi {
                         null,
                         userIds,
                         null,
-                        HeaderUtil.extractVersion(request)
+                        version,
+                        unnamedStreams
                 );
+                if (!unnamedStreams.isEmpty())
+                    namesResolved.set(false);
                 // Populate Streams
                 SimpleDateFormat krakenDateFormat = new SimpleDateFormat("E MMM dd HH:mm:ss z yyyy");
                 SimpleDateFormat krakenAlternateDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'");
@@ -2141,17 +2461,17 @@ public class TwitchUnofficialApi {
                 try {
                     String url = API_KRAKEN + "/search/games";
                     Logger.verbose( "Rest Request to [%s]", url);
-                    Response<String> webbResponse = webb.get(url)
+                    UpstreamResponse<String> twitchResponse = template.get(url)
                             .param("query", query)
                             .param("live", live)
                             .ensureSuccess()
                             .asString();
                     com.rolandoislas.twitchunofficial.data.model.json.twitch.kraken.GameList gameList =
-                            gson.fromJson(webbResponse.getBody(),
+                            gson.fromJson(twitchResponse.getBody(),
                                     com.rolandoislas.twitchunofficial.data.model.json.twitch.kraken.GameList.class);
                     gamesKraken = gameList.getGames();
                 }
-                catch (WebbException | JsonSyntaxException e) {
+                catch (UpstreamException | JsonSyntaxException e) {
                     Logger.warn("Request failed: " + e.getMessage());
                     Logger.exception(e);
                 }
@@ -2175,8 +2495,6 @@ public class TwitchUnofficialApi {
             default:
                 throw halt(BAD_REQUEST, "Invalid type");
         }
-        // Cache and return
-        cache.set(requestId, json);
         return json;
     }
 
@@ -2187,7 +2505,7 @@ public class TwitchUnofficialApi {
      * @return json
      */
     @Cached
-    static String getTopGamesHelix(Request request, @SuppressWarnings("unused") spark.Response response) {
+    static String getTopGamesHelix(Request request, spark.Response response) {
         checkAuth(request);
         // Params
         String after = request.queryParams("after");
@@ -2203,52 +2521,56 @@ public class TwitchUnofficialApi {
             after = afterFromOffset;
         // Check cache
         String requestId = ApiCache.createKey("helix/games/top", after, before, first);
-        String cachedResponse = cache.get(requestId);
-        if (cachedResponse != null)
-            return cachedResponse;
+
+        CachedValue cachedResponse = cache.getWithSoftTimeout(requestId, HeaderUtil.extractIfNoneMatch(request));
 
         // Fetch live data
-        String requestUrl = String.format("%s/games/top", API);
-        Webb webb;
-        if (getTwitchCredentials().getAppToken() != null)
-            webb = getPrivilegedWebb(getTwitchCredentials().getAppToken());
-        else
-            webb = getWebb();
-        // Params
-        Map<String, Object> params = new HashMap<>();
-        if (after != null)
-            params.put("after", after);
-        if (before != null)
-            params.put("before", before);
-        params.put("first", first);
-        // REST Request
-        List<Game> games = null;
-        //noinspection Duplicates
-        try {
-            Logger.verbose( "Rest Request to [%s]", requestUrl);
-            Response<String> webbResponse = webb.get(requestUrl)
-                    .params(params)
-                    .ensureSuccess()
-                    .asString();
-            logTwitchRateLimit(webbResponse);
+        String gamesAfter = after;
+        String gamesFirst = first;
+        return getStaleWhileRevalidate(request, response, requestId, cachedResponse, () -> {
+            String requestUrl = String.format("%s/games/top", API);
+            UpstreamTemplate template;
+            if (getTwitchCredentials().getAppToken() != null)
+                template = getPrivilegedTemplate(getTwitchCredentials().getAppToken());
+            else
+                template = getTemplate();
+            // Params
+            Map<String, Object> params = new HashMap<>();
+            if (gamesAfter != null)
+                params.put("after", gamesAfter);
+            if (before != null)
+                params.put("before", before);
+            params.put("first", gamesFirst);
+            // REST Request
+            List<Game> games = null;
+            //noinspection Duplicates
             try {
-                GameList gameList = gson.fromJson(webbResponse.getBody(), GameList.class);
-                games = gameList.getGames();
+                Logger.verbose( "Rest Request to [%s]", requestUrl);
+                UpstreamResponse<String> twitchResponse = template.get(requestUrl)
+                        .params(params)
+                        .rateLimit(rateLimitGovernor)
+                        .ensureSuccess()
+                        .asString();
+                logTwitchRateLimit(twitchResponse);
+                try {
+                    GameList gameList = gson.fromJson(twitchResponse.getBody(), GameList.class);
+                    games = gameList.getGames();
+                }
+                catch (JsonSyntaxException e) {
+                    Logger.exception(e);
+                }
             }
-            catch (JsonSyntaxException e) {
+            catch (UpstreamException e) {
+                Logger.warn("Request failed: " + e.getMessage());
                 Logger.exception(e);
             }
-        }
-        catch (WebbException e) {
-            Logger.warn("Request failed: " + e.getMessage());
-            Logger.exception(e);
-        }
-        if (games == null)
-            throw halt(BAD_GATEWAY, "Bad Gateway: Could not connect to Twitch API");
-        // Store and return
-        String json = gson.toJson(games);
-        cache.set(requestId, json);
-        return json;
+            if (games == null)
+                throw halt(BAD_GATEWAY, "Bad Gateway: Could not connect to Twitch API");
+            // Store and return
+            String json = gson.toJson(games);
+            cache.setWithSoftTimeout(requestId, json);
+            return json;
+        });
     }
 
     /**
@@ -2332,7 +2654,7 @@ public class TwitchUnofficialApi {
      * @return video json
      */
     @Cached
-    static String getVideosHelix(Request request, @SuppressWarnings("unused") spark.Response response) {
+    static String getVideosHelix(Request request, spark.Response response) {
         checkAuth(request);
         // Parse query params
         String userId = request.queryParams("user_id");
@@ -2389,7 +2711,7 @@ public class TwitchUnofficialApi {
         String requestId = ApiCache.createKey("helix/videos", params.toArray());
         String cachedResponse = cache.get(requestId);
         if (cachedResponse != null)
-            return cachedResponse;
+            return JsonResponse.write(request, response, cachedResponse);
         // Request live data
         List<Stream> videos = getVideos(ids, userId, gameId, after,
                 before, first, language, period, sort, type, HeaderUtil.extractVersion(request));
@@ -2401,9 +2723,12 @@ public class TwitchUnofficialApi {
             // TODO this previously used kraken data to fetch the game information. Helix does not even have the ID
         //}
         // Cache and return
+        // Videos without resolved names are only returned to this request
+        boolean namesResolved = addNamesToStreams(videos).isEmpty();
         String json = gson.toJson(videos);
-        cache.set(requestId, json, ApiCache.TIMEOUT_HOUR);
-        return json;
+        if (namesResolved)
+            cache.set(requestId, json, ApiCache.TIMEOUT_HOUR);
+        return JsonResponse.write(request, response, json);
     }
 
     /**
@@ -2436,11 +2761,11 @@ public class TwitchUnofficialApi {
             @Nullable String type,
             @Nullable ComparableVersion version) {
         // Rest template
-        Webb webb;
+        UpstreamTemplate template;
         if (getTwitchCredentials().getAppToken() != null)
-            webb = getPrivilegedWebb(getTwitchCredentials().getAppToken());
+            template = getPrivilegedTemplate(getTwitchCredentials().getAppToken());
         else
-            webb = getWebb();
+            template = getTemplate();
         // Rest URL
         String requestUrl = String.format("%s/videos", API);
         // Params
@@ -2469,8 +2794,9 @@ public class TwitchUnofficialApi {
         List<Stream> videos = null;
         try {
             Logger.verbose( "Rest Request to [%s]", requestUrl);
-            Response<String> response = webb.get(requestUrl)
+            UpstreamResponse<String> response = template.get(requestUrl)
                     .params(params)
+                    .rateLimit(rateLimitGovernor)
                     .ensureSuccess()
                     .asString();
             logTwitchRateLimit(response);
@@ -2499,12 +2825,11 @@ public class TwitchUnofficialApi {
                 video.setDurationSeconds(durationSeconds);
             }
         }
-        catch (WebbException | JsonSyntaxException | IllegalStateException e) {
+        catch (UpstreamException | JsonSyntaxException | IllegalStateException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
         }
         if (videos != null) {
-            addNamesToStreams(videos);
             if (version == null || version.compareTo(new ComparableVersion("1.5")) >= 0) {
                 for (Stream video : videos) {
                     if (video.getThumbnailUrl() != null && !video.getThumbnailUrl().isEmpty()) {
@@ -2543,14 +2868,14 @@ public class TwitchUnofficialApi {
 
         // Endpoint
         String requestUrl = String.format("%s/users/%s/follows/channels/%s", API_KRAKEN, userId, id);
-        Webb webb = getPrivilegedWebbKraken(token);
+        UpstreamTemplate template = getPrivilegedTemplateKraken(token);
 
         // REST Request
         try {
             Logger.verbose("Rest Request to [%s]", requestUrl);
-            webb.put(requestUrl).body("").ensureSuccess().asVoid();
+            template.put(requestUrl).body("").ensureSuccess().asVoid();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
         }
@@ -2586,12 +2911,12 @@ public class TwitchUnofficialApi {
         String userId = user.getId();
         // Rest request
         String requestUrl = String.format("%s/users/%s/follows/channels/%s", API_KRAKEN, userId, id);
-        Webb webb = getPrivilegedWebbKraken(token);
+        UpstreamTemplate template = getPrivilegedTemplateKraken(token);
         try {
             Logger.verbose("Rest Request to [%s]", requestUrl);
-            webb.delete(requestUrl).body("").ensureSuccess().asVoid();
+            template.delete(requestUrl).body("").ensureSuccess().asVoid();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
         }
@@ -2670,20 +2995,20 @@ public class TwitchUnofficialApi {
     @NotNull
     @NotCached
     public static FollowedGamesWithRate getFollowedGamesWithRate(@Nullable String token, String userName, long limit, long offset) {
-        Webb webb = getWebbKraken();
+        UpstreamTemplate template = getTemplateKraken();
         if (token != null)
-            webb = getPrivilegedWebb(token);
+            template = getPrivilegedTemplate(token);
         String url = String.format("%s/users/%s/follows/games", API_RAW, userName);
         List<Game> followedGames = new ArrayList<>();
         // This endpoint may switch to the helix endpoint. It should log and return the actual limit
         try {
             Logger.verbose("Rest request to [%s]", url);
-            Response<String> webbResponse = webb.get(url)
+            UpstreamResponse<String> twitchResponse = template.get(url)
                     .param("limit", limit)
                     .param("offset", offset * limit)
                     .ensureSuccess()
                     .asString();
-            FollowedGameList followedGameList = gson.fromJson(webbResponse.getBody(), FollowedGameList.class);
+            FollowedGameList followedGameList = gson.fromJson(twitchResponse.getBody(), FollowedGameList.class);
             if (followedGameList.getFollows() != null) {
                 for (com.rolandoislas.twitchunofficial.data.model.json.twitch.kraken.Game follow : followedGameList.getFollows()) {
                     Game game = new Game();
@@ -2698,7 +3023,7 @@ public class TwitchUnofficialApi {
                 }
             }
         }
-        catch (WebbException | JsonSyntaxException e) {
+        catch (UpstreamException | JsonSyntaxException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
         }
@@ -2757,19 +3082,19 @@ public class TwitchUnofficialApi {
         if (user == null || user.getLogin() == null || user.getLogin().isEmpty())
             throw halt(SERVER_ERROR, "Failed to get user name.");
         String url = String.format("%s/users/%s/follows/games/follow", API_RAW, user.getLogin());
-        Webb webb = getPrivilegedWebbKraken(token);
+        UpstreamTemplate template = getPrivilegedTemplateKraken(token);
         try {
             Logger.verbose("Rest Request to [%s]", url);
             JsonObject body = new JsonObject();
             body.addProperty("src", "directory");
             body.addProperty("name", name);
-            webb.put(url)
+            template.put(url)
                     .header("Content-Type", "application/json")
                     .body(body.toString())
                     .ensureSuccess()
                     .asVoid();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
         }
@@ -2806,19 +3131,19 @@ public class TwitchUnofficialApi {
         if (user == null || user.getLogin() == null || user.getLogin().isEmpty())
             throw halt(SERVER_ERROR, "Failed to get user name.");
         String url = String.format("%s/users/%s/follows/games/unfollow", API_RAW, user.getLogin());
-        Webb webb = getPrivilegedWebbKraken(token);
+        UpstreamTemplate template = getPrivilegedTemplateKraken(token);
         try {
             Logger.verbose("Rest Request to [%s]", url);
             JsonObject body = new JsonObject();
             body.addProperty("src", "directory");
             body.addProperty("name", name);
-            webb.delete(url)
+            template.delete(url)
                     .header("Content-Type", "application/json")
                     .body(body.toString())
                     .ensureSuccess()
                     .asVoid();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.warn("Request failed: " + e.getMessage());
             Logger.exception(e);
         }
@@ -2858,23 +3183,23 @@ public class TwitchUnofficialApi {
         @Nullable User user = getUserFromToken(token);
         if (user == null || user.getLogin() == null || user.getLogin().isEmpty())
             throw halt(SERVER_ERROR, "Failed to get user name.");
-        Webb webb = getPrivilegedWebbKraken(token);
+        UpstreamTemplate template = getPrivilegedTemplateKraken(token);
         String url = String.format("%s/users/%s/follows/games/isFollowing", API_RAW, user.getLogin());
         JsonObject status = new JsonObject();
         try {
             Logger.verbose("Rest request to [%s]", url);
-            Response<String> webbResponse = webb.get(url)
+            UpstreamResponse<String> twitchResponse = template.get(url)
                     .param("name", name)
                     .ensureSuccess()
                     .asString();
-            JsonObject jsonResponse = gson.fromJson(webbResponse.getBody(), JsonObject.class);
+            JsonObject jsonResponse = gson.fromJson(twitchResponse.getBody(), JsonObject.class);
             if (jsonResponse.has("error"))
                 status.addProperty("status", false);
             else
                 status.addProperty("status", true);
         }
-        catch (WebbException e) {
-            if (e.getResponse().getStatusCode() != 404) {
+        catch (UpstreamException e) {
+            if (e.getStatusCode() != 404) {
                 Logger.warn("Request failed: " + e.getMessage());
                 Logger.exception(e);
             }
@@ -5,8 +5,6 @@
 
 package com.rolandoislas.twitchunofficial;
 
-import com.goebl.david.Webb;
-import com.goebl.david.WebbException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
@@ -31,6 +29,10 @@ import com.rolandoislas.twitchunofficial.util.HeaderUtil;
 import com.rolandoislas.twitchunofficial.util.Logger;
 import com.rolandoislas.twitchunofficial.util.StringUtil;
 import com.rolandoislas.twitchunofficial.util.admin.TwitchedAdminServer;
+import com.rolandoislas.twitchunofficial.util.http.UpstreamClient;
+import com.rolandoislas.twitchunofficial.util.http.UpstreamException;
+import com.rolandoislas.twitchunofficial.util.http.UpstreamResponse;
+import com.rolandoislas.twitchunofficial.util.http.UpstreamTemplate;
 import org.apache.maven.artifact.versioning.ComparableVersion;
 import org.eclipse.jetty.http.HttpStatus;
 import org.jetbrains.annotations.NotNull;
@@ -43,8 +45,10 @@ import spark.Spark;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -92,8 +96,10 @@ public class TwitchedApi {
         // Store and return
         LinkId ret = new LinkId(linkId, getLinkIdVersionFromHeader(request));
         String retJson = gson.toJson(ret);
-        cache.set(linkCacheId, retJson);
-        cache.set(shortLinkCacheId, linkCacheId);
+        Map<String, String> values = new HashMap<>();
+        values.put(linkCacheId, retJson);
+        values.put(shortLinkCacheId, linkCacheId);
+        cache.setMultiple(values);
         return retJson;
     }
 
@@ -256,7 +262,7 @@ public class TwitchedApi {
      * @param state linkId
      * @return if the token fetch was successful
      */
-    static boolean requestAccessToken(Request request, String authCode, String state) throws WebbException {
+    static boolean requestAccessToken(Request request, String authCode, String state) throws UpstreamException {
         if (!isLinkCodeValid(state.toUpperCase()))
             return false;
         String url = "https://id.twitch.tv/oauth2/token?client_id=%s&client_secret=%s&code=%s" +
@@ -282,15 +288,15 @@ public class TwitchedApi {
      */
     @Nullable
     private static AccessToken requestAccessTokenFromUrl(String url) {
-        com.goebl.david.Response<String> result;
+        UpstreamResponse<String> result;
         try {
-            Webb webb = getWebb();
-            result = webb
+            UpstreamTemplate template = getTemplate();
+            result = template
                     .post(url)
                     .ensureSuccess()
                     .asString();
         }
-        catch (WebbException e) {
+        catch (UpstreamException e) {
             Logger.exception(e);
             return null;
         }
@@ -365,17 +371,17 @@ public class TwitchedApi {
         if (token == null || token.isEmpty())
             return gson.toJson(validationList);
         String url = "https://id.twitch.tv/oauth2/validate";
-        com.goebl.david.Response<String> result;
+        UpstreamResponse<String> result;
         try {
-            Webb webb = getWebb();
-            result = webb
+            UpstreamTemplate template = getTemplate();
+            result = template
                     .get(url)
                     .header("Authorization", "OAuth " + token)
                     .ensureSuccess()
                     .asString();
         }
-        catch (WebbException e) {
-            if (e.getResponse().getStatusCode() != 401)
+        catch (UpstreamException e) {
+            if (e.getStatusCode() != 401)
                 Logger.exception(e);
             return gson.toJson(validationList);
         }
@@ -515,18 +521,44 @@ public class TwitchedApi {
     }
 
     /**
-     * Create a webb instance with user agent set
-     * @return Webb instance
+     * Get cache statistics
+     * @param request request
+     * @param response response
+     * @return json or 404
+     */
+    @Nullable
+    static String getCacheStats(@SuppressWarnings("unused") Request request,
+                                @SuppressWarnings("unused") Response response) {
+        if (!isDevApiEnabled())
+            return null;
+        JsonObject stats = cache.getStats();
+        stats.add("single_flight", TwitchUnofficialApi.singleFlight.getStats());
+        stats.add("refresh", TwitchUnofficialApi.cacheRefresher.getStats());
+        stats.add("rate_limit", TwitchUnofficialApi.rateLimitGovernor.getStats());
+        stats.add("live_index", TwitchUnofficialApi.liveStreamIndex.getStats());
+        stats.add("batch_users", TwitchUnofficialApi.userLoader.getStats());
+        stats.add("batch_games", TwitchUnofficialApi.gameLoader.getStats());
+        stats.add("filtered_playlists", ApiCache.getNearCacheStats(TwitchUnofficialApi.filteredPlaylists));
+        stats.add("stream_qualities", TwitchUnofficialApi.streamQualityTable.getStats());
+        stats.add("hls_warm", TwitchUnofficialApi.hlsWarmer.getStats());
+        stats.add("hls_locks", TwitchUnofficialApi.hlsLocks.getStats());
+        stats.add("upstream", UpstreamClient.getInstance().getStats());
+        return stats.toString();
+    }
+
+    /**
+     * Create a rest template for the shared upstream client with user agent set
+     * @return template
      */
-    static Webb getWebb() {
-        Webb webb = Webb.create();
-        webb.setDefaultHeader("Accept", "*/*");
-        webb.setDefaultHeader("User-Agent",
+    static UpstreamTemplate getTemplate() {
+        UpstreamTemplate template = UpstreamClient.getInstance().createTemplate();
+        template.setDefaultHeader("Accept", "*/*");
+        template.setDefaultHeader("User-Agent",
                 String.format("%s/%s (Java/%s)",
                         Constants.NAME,
                         Constants.VERSION,
                         System.getProperty("java.version")));
-        return webb;
+        return template;
     }
 
     /**
@@ -699,6 +731,7 @@ public class TwitchedApi {
             DatabaseUtil.setStreamQualities(streamQualities);
             String cacheId = ApiCache.createKey("streamquality");
             cache.remove(cacheId);
+            TwitchUnofficialApi.streamQualityTable.publishReload();
         }
         catch (JsonSyntaxException e) {
             throw halt(HttpStatus.BAD_REQUEST_400, "");
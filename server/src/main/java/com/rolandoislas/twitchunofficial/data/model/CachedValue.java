@@ -0,0 +1,48 @@
+package com.rolandoislas.twitchunofficial.data.model;
+
+import org.jetbrains.annotations.Nullable;
+
+public class CachedValue {
+    @Nullable private final String value;
+    private final boolean stale;
+    @Nullable private final String eTag;
+    private final boolean notModified;
+
+    public CachedValue(@Nullable String value, boolean stale, @Nullable String eTag, boolean notModified) {
+        this.value = value;
+        this.stale = stale;
+        this.eTag = eTag;
+        this.notModified = notModified;
+    }
+
+    public CachedValue(@Nullable String value, boolean stale, @Nullable String eTag) {
+        this(value, stale, eTag, false);
+    }
+
+    @Nullable
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return value is past its soft timeout and should be refreshed
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * @return quoted content hash of the value
+     */
+    @Nullable
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return the requester already has the value - the value itself was not read
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2018 Rolando Islas. All Rights Reserved
+ *
+ */
+
+package com.rolandoislas.twitchunofficial.data.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * m3u8 master playlist split into its header lines and variant playlists
+ * Lines starting with #EXT-X-MEDIA and the two lines after them are a variant. All other lines are header lines and
+ * are kept in order, already joined with CRLF line endings.
+ */
+public class MasterPlaylist {
+    private static final String MEDIA_TAG = "#EXT-X-MEDIA";
+    private static final String LINE_END = "\r\n";
+    private final String raw;
+    private final String header;
+    private final List<Playlist> variants;
+    private final int variantsLength;
+
+    private MasterPlaylist(String raw, String header, List<Playlist> variants, int variantsLength) {
+        this.raw = raw;
+        this.header = header;
+        this.variants = variants;
+        this.variantsLength = variantsLength;
+    }
+
+    /**
+     * Parse a master playlist
+     * Lines end at LF or CRLF. Trailing empty lines are dropped. A media line without two lines after it is kept as a
+     * header line.
+     * @param playlistString raw m3u8 playlist
+     * @return parsed playlist
+     */
+    public static MasterPlaylist parse(@NotNull String playlistString) {
+        int[] lineBounds = findLines(playlistString);
+        int lineCount = lineBounds[0];
+        StringBuilder header = new StringBuilder();
+        List<Playlist> variants = new ArrayList<>();
+        int variantsLength = 0;
+        for (int lineIndex = 0; lineIndex < lineCount; lineIndex++) {
+            int start = lineBounds[lineIndex * 2 + 1];
+            int end = lineBounds[lineIndex * 2 + 2];
+            // Not media line or EOF - add line but do not force add others
+            if (!playlistString.startsWith(MEDIA_TAG, start) || lineIndex + 2 >= lineCount) {
+                header.append(playlistString, start, end).append(LINE_END);
+                continue;
+            }
+            // Add line and two after it to playlists list
+            Playlist variant = new Playlist(playlistString.substring(start, end),
+                    getLine(playlistString, lineBounds, lineIndex + 1),
+                    getLine(playlistString, lineBounds, lineIndex + 2));
+            for (String line : variant.getLines())
+                variantsLength += line.length() + LINE_END.length();
+            variants.add(variant);
+            lineIndex += 2;
+        }
+        return new MasterPlaylist(playlistString, header.toString(), variants, variantsLength);
+    }
+
+    /**
+     * Find the start and end index of each line
+     * @param playlistString playlist
+     * @return line count followed by start and end (exclusive, without the line ending) pairs
+     */
+    private static int[] findLines(String playlistString) {
+        int[] bounds = new int[33];
+        int lineCount = 0;
+        int nonEmptyLineCount = 0;
+        int start = 0;
+        while (start <= playlistString.length()) {
+            int newLine = playlistString.indexOf('\n', start);
+            int next = newLine < 0 ? playlistString.length() + 1 : newLine + 1;
+            int end = newLine < 0 ? playlistString.length() : newLine;
+            if (newLine >= 0 && end > start && playlistString.charAt(end - 1) == '\r')
+                end--;
+            if (lineCount * 2 + 2 >= bounds.length) {
+                int[] grown = new int[bounds.length * 2];
+                System.arraycopy(bounds, 0, grown, 0, bounds.length);
+                bounds = grown;
+            }
+            bounds[lineCount * 2 + 1] = start;
+            bounds[lineCount * 2 + 2] = end;
+            lineCount++;
+            if (end > start)
+                nonEmptyLineCount = lineCount;
+            start = next;
+        }
+        bounds[0] = nonEmptyLineCount;
+        return bounds;
+    }
+
+    /**
+     * @param playlistString playlist
+     * @param lineBounds bounds from findLines
+     * @param lineIndex line
+     * @return line without the line ending
+     */
+    private static String getLine(String playlistString, int[] lineBounds, int lineIndex) {
+        return playlistString.substring(lineBounds[lineIndex * 2 + 1], lineBounds[lineIndex * 2 + 2]);
+    }
+
+    /**
+     * Build a master playlist with the header lines and the video variants that meet a quality
+     * @param maxQuality quality variants have to meet
+     * @return playlist with CRLF line endings or null if no variant meets the quality
+     */
+    @Nullable
+    public String filter(StreamQualityRule maxQuality) {
+        StringBuilder filtered = null;
+        for (Playlist variant : variants) {
+            if (!variant.isVideo() || !maxQuality.meetsQuality(variant))
+                continue;
+            if (filtered == null)
+                filtered = new StringBuilder(header.length() + variantsLength).append(header);
+            for (String line : variant.getLines())
+                filtered.append(line).append(LINE_END);
+        }
+        return filtered == null ? null : filtered.toString();
+    }
+
+    /**
+     * @return playlist as it was passed to parse
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    /**
+     * @return variant playlists in the order they appear
+     */
+    public List<Playlist> getVariants() {
+        return variants;
+    }
+}
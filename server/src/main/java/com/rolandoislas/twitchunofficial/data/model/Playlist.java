@@ -9,13 +9,13 @@ import com.rolandoislas.twitchunofficial.util.StringUtil;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * m3u8 playlist lines from a master playlist
  */
 public class Playlist {
+    private static final String NAME = "NAME=\"";
+    private static final String BANDWIDTH = "BANDWIDTH=";
     private boolean audioOnly;
     private int fps;
     private List<String> lines;
@@ -34,19 +34,13 @@ public class Playlist {
         audioOnly = lineOne.contains("audio") || lineTwo.contains("audio");
         source = lineOne.contains("source");
         // Quality
-        Pattern qualityPattern = Pattern.compile(".*NAME=\"(\\d+)p?(\\d*).*\".*");
-        Matcher qualityMatcher = qualityPattern.matcher(lineOne);
-        if (qualityMatcher.matches()) {
-            quality = (int) StringUtil.parseLong(qualityMatcher.group(1));
-            fps = (int) StringUtil.parseLong(qualityMatcher.group(2));
-            if (fps == 0)
-                fps = 30;
+        int[] qualityAndFps = parseName(lineOne);
+        if (qualityAndFps != null) {
+            quality = qualityAndFps[0];
+            fps = qualityAndFps[1] == 0 ? 30 : qualityAndFps[1];
         }
         // Bitrate
-        Pattern bitratePattern = Pattern.compile(".*BANDWIDTH=(\\d+),.*");
-        Matcher bitrateMatcher = bitratePattern.matcher(lineTwo);
-        if (bitrateMatcher.matches())
-            bitrate = (int) StringUtil.parseLong(bitrateMatcher.group(1));
+        bitrate = parseBandwidth(lineTwo);
     }
 
     public Playlist(int quality, int fps) {
@@ -103,4 +97,76 @@ public class Playlist {
     public boolean isSource() {
         return source;
     }
+
+    /**
+     * Find the quality and fps in the NAME attribute of a media line
+     * Matches the last NAME=" that is followed by digits, an optional p, optional digits, and a closing quote later
+     * in the line.
+     * @param line media line
+     * @return quality and fps (0 if missing) or null if the name is not a quality
+     */
+    private static int[] parseName(String line) {
+        int nameIndex = line.lastIndexOf(NAME);
+        while (nameIndex >= 0) {
+            int qualityStart = nameIndex + NAME.length();
+            int qualityEnd = skipDigits(line, qualityStart);
+            if (qualityEnd > qualityStart) {
+                int fpsStart = qualityEnd < line.length() && line.charAt(qualityEnd) == 'p' ? qualityEnd + 1 :
+                        qualityEnd;
+                int fpsEnd = skipDigits(line, fpsStart);
+                if (line.indexOf('"', fpsEnd) >= 0)
+                    return new int[] {parseInt(line, qualityStart, qualityEnd), parseInt(line, fpsStart, fpsEnd)};
+            }
+            nameIndex = nameIndex == 0 ? -1 : line.lastIndexOf(NAME, nameIndex - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Find the BANDWIDTH attribute of a stream info line
+     * Matches the last BANDWIDTH= that is followed by digits and a comma.
+     * @param line stream info line
+     * @return bandwidth or 0 if it is missing
+     */
+    private static int parseBandwidth(String line) {
+        int bandwidthIndex = line.lastIndexOf(BANDWIDTH);
+        while (bandwidthIndex >= 0) {
+            int start = bandwidthIndex + BANDWIDTH.length();
+            int end = skipDigits(line, start);
+            if (end > start && end < line.length() && line.charAt(end) == ',')
+                return parseInt(line, start, end);
+            bandwidthIndex = bandwidthIndex == 0 ? -1 : line.lastIndexOf(BANDWIDTH, bandwidthIndex - 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Find the end of a run of digits
+     * @param line line
+     * @param start index the run starts at
+     * @return index after the last digit
+     */
+    private static int skipDigits(String line, int start) {
+        int end = start;
+        while (end < line.length() && line.charAt(end) >= '0' && line.charAt(end) <= '9')
+            end++;
+        return end;
+    }
+
+    /**
+     * Parse digits without creating a substring
+     * @param line line
+     * @param start first digit
+     * @param end index after the last digit
+     * @return value - 0 if there are no digits or the value overflows an int
+     */
+    private static int parseInt(String line, int start, int end) {
+        long value = 0;
+        for (int charIndex = start; charIndex < end; charIndex++) {
+            value = value * 10 + (line.charAt(charIndex) - '0');
+            if (value > Integer.MAX_VALUE)
+                return 0;
+        }
+        return (int) value;
+    }
 }
@@ -0,0 +1,117 @@
+package com.rolandoislas.twitchunofficial.data.model;
+
+/**
+ * Immutable stream quality with the allowed resolution and fps pairs compiled to a bitmask
+ * Each resolution tier has a bit for 30 fps and a bit for 60 fps. Playlists are checked the same way as
+ * StreamQuality#meetsQuality(Playlist).
+ */
+public final class StreamQualityRule {
+    /**
+     * Amount of quality limits a rule can be compiled for - below 240p, 240p, 480p, 720p, and 1080p and above
+     */
+    public static final int LIMIT_LEVELS = 5;
+    private static final int[] TIER_LIMITS = {240, 480, 720, 1080};
+    private static final int ALL_60 = 0b10101010;
+    private final String model;
+    private final int bitrate;
+    private final boolean onlySource60;
+    private final int allowed;
+
+    /**
+     * @param quality quality to compile
+     */
+    public StreamQualityRule(StreamQuality quality) {
+        this(quality.getModel(), quality.getBitrate(), quality.getOnlySource60(),
+                bit(0, quality.get240p30(), quality.get240p60()) |
+                bit(1, quality.get480p30(), quality.get480p60()) |
+                bit(2, quality.get720p30(), quality.get720p60()) |
+                bit(3, quality.get1080p30(), quality.get1080p60()));
+    }
+
+    private StreamQualityRule(String model, int bitrate, boolean onlySource60, int allowed) {
+        this.model = model;
+        this.bitrate = bitrate;
+        this.onlySource60 = onlySource60;
+        this.allowed = allowed;
+    }
+
+    /**
+     * Get the bits of a resolution tier
+     * @param tier tier index
+     * @param allow30 30 fps is allowed
+     * @param allow60 60 fps is allowed
+     * @return bits
+     */
+    private static int bit(int tier, boolean allow30, boolean allow60) {
+        return (allow30 ? 1 << (tier * 2) : 0) | (allow60 ? 1 << (tier * 2 + 1) : 0);
+    }
+
+    /**
+     * Get the resolution tier of a quality
+     * @param quality vertical resolution
+     * @return tier index or -1 if qualities of this resolution are not restricted
+     */
+    private static int getTier(int quality) {
+        if (quality <= 240)
+            return 0;
+        if (quality <= 480)
+            return 1;
+        if (quality == 720)
+            return 2;
+        if (quality > 720)
+            return 3;
+        return -1;
+    }
+
+    /**
+     * Get the limit level of a requested quality
+     * @param quality requested vertical resolution
+     * @return level from 0 (below 240p) to LIMIT_LEVELS - 1 (1080p and above)
+     */
+    public static int getLimitLevel(int quality) {
+        int level = 0;
+        while (level < TIER_LIMITS.length && quality >= TIER_LIMITS[level])
+            level++;
+        return level;
+    }
+
+    /**
+     * Create a rule with 60 fps and the tiers above a limit disabled
+     * @param allow60 keep 60 fps qualities
+     * @param limitLevel level from getLimitLevel - tiers at or above it are disabled
+     * @return limited rule
+     */
+    public StreamQualityRule limit(boolean allow60, int limitLevel) {
+        int limited = allowed;
+        if (!allow60)
+            limited &= ~ALL_60;
+        limited &= (1 << (limitLevel * 2)) - 1;
+        return new StreamQualityRule(model, bitrate, onlySource60, limited);
+    }
+
+    /**
+     * Check if a playlist stream meets the defined quality
+     * @param stream Stream playlist to check
+     * @return true if the stream meets the restrictions placed by this rule
+     */
+    public boolean meetsQuality(Playlist stream) {
+        // Only source streams may be 60 FPS
+        if (stream.getFps() == 60 && onlySource60 && !stream.isSource())
+            return false;
+        // Check if the bitrate is higher than the defined max bitrate and decline.
+        if (stream.getBitrate() > bitrate)
+            return false;
+        if (stream.getFps() != 30 && stream.getFps() != 60)
+            return true;
+        int tier = getTier(stream.getQuality());
+        return tier < 0 || (allowed & (1 << (tier * 2 + (stream.getFps() == 60 ? 1 : 0)))) != 0;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+}
@@ -26,6 +26,10 @@ public class Follow {
         this.toId = toId;
     }
 
+    public String getFromId() {
+        return fromId;
+    }
+
     public void setFromId(String fromId) {
         this.fromId = fromId;
     }
@@ -33,4 +37,8 @@ public class Follow {
     public String getFollowedAt() {
         return followedAt;
     }
+
+    public void setFollowedAt(String followedAt) {
+        this.followedAt = followedAt;
+    }
 }
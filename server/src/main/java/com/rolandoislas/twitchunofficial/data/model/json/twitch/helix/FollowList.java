@@ -43,4 +43,12 @@ public class FollowList {
     public long getTotal() {
         return total;
     }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public void setPagination(Pagination pagination) {
+        this.pagination = pagination;
+    }
 }
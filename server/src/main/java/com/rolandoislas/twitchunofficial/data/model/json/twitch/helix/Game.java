@@ -53,4 +53,8 @@ public class Game {
     public void setBoxArtUrl(String boxArtUrl) {
         this.boxArtUrl = boxArtUrl;
     }
+
+    public String getBoxArtUrl() {
+        return boxArtUrl;
+    }
 }
@@ -0,0 +1,76 @@
+package com.rolandoislas.twitchunofficial.data.model.json.twitch.helix;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * List of streams with hash indices of their user ids and logins
+ * Lookups by id or login do not scan the list, so streams can be looked up in a loop.
+ */
+public class IndexedStreams {
+    private final List<Stream> streams = new ArrayList<>();
+    private final Set<String> ids = new HashSet<>();
+    private final Set<String> logins = new HashSet<>();
+
+    public IndexedStreams() {
+    }
+
+    /**
+     * @param streams streams to add
+     */
+    public IndexedStreams(Collection<Stream> streams) {
+        addAll(streams);
+    }
+
+    /**
+     * Add a stream
+     * Null streams are ignored.
+     * @param stream stream
+     */
+    public void add(Stream stream) {
+        if (stream == null)
+            return;
+        streams.add(stream);
+        if (stream.getUserId() != null)
+            ids.add(stream.getUserId());
+        if (stream.getUserName() != null && stream.getUserName().getLogin() != null)
+            logins.add(stream.getUserName().getLogin());
+    }
+
+    /**
+     * Add streams
+     * @param streams streams
+     */
+    public void addAll(Collection<Stream> streams) {
+        for (Stream stream : streams)
+            add(stream);
+    }
+
+    /**
+     * Check if at least one stream has the user id
+     * @param id user id
+     * @return a stream has the id
+     */
+    public boolean containsId(String id) {
+        return id != null && ids.contains(id);
+    }
+
+    /**
+     * Check if at least one stream has the user login
+     * @param login user login
+     * @return a stream has the login
+     */
+    public boolean containsLogin(String login) {
+        return login != null && logins.contains(login);
+    }
+
+    /**
+     * @return streams in the order they were added
+     */
+    public List<Stream> getStreams() {
+        return streams;
+    }
+}
@@ -159,4 +159,72 @@ public class Stream {
     public long getDurationSeconds() {
         return durationSeconds;
     }
+
+    public String getGameName() {
+        return gameName;
+    }
+
+    public List<String> getCommunityIds() {
+        return communityIds;
+    }
+
+    public String getStartedAt() {
+        return startedAt;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(String createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(String publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getViewable() {
+        return viewable;
+    }
+
+    public void setViewable(String viewable) {
+        this.viewable = viewable;
+    }
+
+    public long getViewCount() {
+        return viewCount;
+    }
+
+    public void setViewCount(long viewCount) {
+        this.viewCount = viewCount;
+    }
+
+    public void setDuration(String duration) {
+        this.duration = duration;
+    }
 }
@@ -0,0 +1,83 @@
+package com.rolandoislas.twitchunofficial.data.model.json.twitch.helix;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the streams with the most viewers out of the streams added to it
+ * Streams are ranked with the StreamViewComparator. Streams with the same rank keep the order they were added in, the
+ * same as a stable sort of all streams would.
+ */
+public class TopStreams {
+    private final int limit;
+    private final Comparator<RankedStream> rank;
+    private final PriorityQueue<RankedStream> worstFirst;
+    private long added = 0;
+
+    /**
+     * @param limit max amount of streams to keep
+     */
+    public TopStreams(int limit) {
+        this.limit = Math.max(0, limit);
+        this.rank = Comparator.comparing((RankedStream ranked) -> ranked.stream,
+                new StreamViewComparator())
+                .thenComparing(Comparator.comparingLong((RankedStream ranked) -> ranked.order).reversed());
+        this.worstFirst = new PriorityQueue<>(Math.max(1, this.limit), rank);
+    }
+
+    /**
+     * Add a stream, dropping the lowest ranked stream if there are more than the limit
+     * @param stream stream
+     */
+    public void add(Stream stream) {
+        if (limit == 0)
+            return;
+        worstFirst.add(new RankedStream(stream, added++));
+        if (worstFirst.size() > limit)
+            worstFirst.poll();
+    }
+
+    /**
+     * Add streams
+     * @param streams streams
+     */
+    public void addAll(List<Stream> streams) {
+        for (Stream stream : streams)
+            add(stream);
+    }
+
+    /**
+     * @return amount of streams kept
+     */
+    public int size() {
+        return worstFirst.size();
+    }
+
+    /**
+     * Get the kept streams
+     * @return streams ordered from the most to the least viewers
+     */
+    public List<Stream> getStreams() {
+        List<RankedStream> ranked = new ArrayList<>(worstFirst);
+        ranked.sort(rank.reversed());
+        List<Stream> streams = new ArrayList<>(ranked.size());
+        for (RankedStream rankedStream : ranked)
+            streams.add(rankedStream.stream);
+        return streams;
+    }
+
+    /**
+     * Stream with the order it was added in
+     */
+    private static class RankedStream {
+        private final Stream stream;
+        private final long order;
+
+        private RankedStream(Stream stream, long order) {
+            this.stream = stream;
+            this.order = order;
+        }
+    }
+}
@@ -114,4 +114,12 @@ public class User {
     public boolean verifyData() {
         return getId() != null && !getId().isEmpty() && getLogin() != null && !getLogin().isEmpty();
     }
+
+    public boolean isExists() {
+        return exists;
+    }
+
+    public void setExists(boolean exists) {
+        this.exists = exists;
+    }
 }
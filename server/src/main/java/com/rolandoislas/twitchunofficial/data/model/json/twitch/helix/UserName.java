@@ -28,4 +28,12 @@ public class UserName {
     public void setLogin(String login) {
         this.login = login;
     }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
 }
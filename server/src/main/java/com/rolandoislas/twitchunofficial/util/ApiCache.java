@@ -6,38 +6,40 @@
 package com.rolandoislas.twitchunofficial.util;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
-import com.heroku.sdk.EnvKeyStore;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
 import com.rolandoislas.twitchunofficial.data.model.CachedStreams;
+import com.rolandoislas.twitchunofficial.data.model.CachedValue;
 import com.rolandoislas.twitchunofficial.data.model.FollowQueue;
-import com.rolandoislas.twitchunofficial.data.model.Id;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Game;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.IndexedStreams;
 import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Stream;
-import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.StreamUtil;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.User;
+import com.rolandoislas.twitchunofficial.util.codec.CacheCodec;
+import com.rolandoislas.twitchunofficial.util.codec.GameCodec;
+import com.rolandoislas.twitchunofficial.util.codec.StreamCodec;
+import com.rolandoislas.twitchunofficial.util.codec.UserCodec;
+import com.rolandoislas.twitchunofficial.util.json.ModelTypeAdapterFactory;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
-import redis.clients.jedis.JedisPoolConfig;
-import redis.clients.jedis.Protocol;
-import redis.clients.util.JedisURIHelper;
-
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLParameters;
-import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManagerFactory;
-import java.io.IOException;
-import java.math.BigInteger;
-import java.net.URI;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.cert.CertificateException;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.util.SafeEncoder;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class ApiCache {
     private static final int TIMEOUT = 60 * 10; // Seconds before a cache value should be considered invalid
@@ -58,68 +60,225 @@ public class ApiCache {
     private static final String FOLLOW_GAME_PREFIX = "_fg_";
     private static final String FOLLOW_TIME_GAME_PREFIX = "_ftg_";
     public static final String BIF_PREFIX = "_b_";
-    private final String redisPassword;
-    private final Gson gson;
-    private JedisPool redisPool;
+    private static final String LOCK_PREFIX = "_lk_";
+    private static final String SOFT_TIMEOUT_PREFIX = "_sw_";
+    private static final String ETAG_PREFIX = "_et_";
+    private static final String RATE_LIMIT_PREFIX = "_rl_";
+    private static final String LIVE_INDEX_KEY = "_li_";
+    private static final String LIVE_INDEX_TIME_KEY = "_lit_";
+    private static final int RATE_LIMIT_TIMEOUT = 2 * 60 * 1000; // Milliseconds a bucket is kept without requests
+    private static final RedisScript UNLOCK_SCRIPT = new RedisScript(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+            "    return redis.call('DEL', KEYS[1])\n" +
+            "end\n" +
+            "return 0");
+    private static final RedisScript REPLACE_SET_SCRIPT = new RedisScript(
+            "local members = {}\n" +
+            "for i = 4, #ARGV do\n" +
+            "    members[ARGV[i]] = true\n" +
+            "end\n" +
+            "local removed = {}\n" +
+            "for _, member in ipairs(redis.call('SMEMBERS', KEYS[1])) do\n" +
+            "    if members[member] then\n" +
+            "        members[member] = nil\n" +
+            "    else\n" +
+            "        removed[#removed + 1] = member\n" +
+            "    end\n" +
+            "end\n" +
+            "local added = {}\n" +
+            "for member in pairs(members) do\n" +
+            "    added[#added + 1] = member\n" +
+            "end\n" +
+            "for i = 1, #removed, 1000 do\n" +
+            "    redis.call('SREM', KEYS[1], unpack(removed, i, math.min(i + 999, #removed)))\n" +
+            "end\n" +
+            "for i = 1, #added, 1000 do\n" +
+            "    redis.call('SADD', KEYS[1], unpack(added, i, math.min(i + 999, #added)))\n" +
+            "end\n" +
+            "if #ARGV > 3 then\n" +
+            "    redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "redis.call('SETEX', KEYS[2], ARGV[2], ARGV[3])\n" +
+            "return {#added, #removed}");
+    private static final String RATE_LIMIT_REFILL =
+            "local function refill(state, now)\n" +
+            "    local limit = tonumber(state[1])\n" +
+            "    local tokens = tonumber(state[2]) + (now - tonumber(state[3])) * limit / 60000\n" +
+            "    if tokens > limit or now >= tonumber(state[4]) then\n" +
+            "        tokens = limit\n" +
+            "    end\n" +
+            "    return tokens\n" +
+            "end\n";
+    private static final RedisScript RATE_LIMIT_ACQUIRE_SCRIPT = new RedisScript(RATE_LIMIT_REFILL +
+            "local now = tonumber(ARGV[1])\n" +
+            "local cost = tonumber(ARGV[2])\n" +
+            "local state = redis.call('HMGET', KEYS[1], 'limit', 'tokens', 'updated', 'reset')\n" +
+            "local limit = tonumber(state[1]) or tonumber(ARGV[4])\n" +
+            "local tokens = limit\n" +
+            "if state[1] and state[2] and state[3] and state[4] then\n" +
+            "    tokens = refill(state, now)\n" +
+            "end\n" +
+            "if tokens - cost < limit * tonumber(ARGV[3]) then\n" +
+            "    return {0, math.floor(tokens), limit}\n" +
+            "end\n" +
+            "tokens = tokens - cost\n" +
+            "redis.call('HMSET', KEYS[1], 'limit', limit, 'tokens', tokens, 'updated', now,\n" +
+            "    'reset', now + math.ceil((limit - tokens) * 60000 / limit))\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[5])\n" +
+            "return {1, math.floor(tokens), limit}");
+    private static final RedisScript RATE_LIMIT_OBSERVE_SCRIPT = new RedisScript(RATE_LIMIT_REFILL +
+            "local now = tonumber(ARGV[1])\n" +
+            "local limit = tonumber(ARGV[2])\n" +
+            "local tokens = tonumber(ARGV[3])\n" +
+            "local state = redis.call('HMGET', KEYS[1], 'limit', 'tokens', 'updated', 'reset')\n" +
+            "if tonumber(state[1]) == limit and state[2] and state[3] and state[4] then\n" +
+            "    tokens = math.min(tokens, refill(state, now))\n" +
+            "end\n" +
+            "redis.call('HMSET', KEYS[1], 'limit', limit, 'tokens', tokens, 'updated', now, 'reset', ARGV[4])\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[5])\n" +
+            "return math.floor(tokens)");
+    private final String nodeId;
+    private final NearCache<String> nearCache;
+    private final NearCache<byte[]> nearBinaryCache;
+    private final RedisShards redisShards;
+    private final StreamCodec streamCodec;
+    private final UserCodec userCodec;
+    private final GameCodec gameCodec;
+    private final int softTimeout;
+    private final int hardTimeout;
+    private final CacheLayout cacheLayout;
+    private final int userTombstoneTimeout;
+    private final int gameTombstoneTimeout;
+    private final int streamTombstoneTimeout;
+    private final ModelCacheStats userStats = new ModelCacheStats();
+    private final ModelCacheStats gameStats = new ModelCacheStats();
+    private final ModelCacheStats streamStats = new ModelCacheStats();
 
     public ApiCache(String redisServer) {
-        String connectionLimit = System.getenv("REDIS_CONNECTIONS");
-        JedisPoolConfig poolConfig = new JedisPoolConfig();
-        poolConfig.setBlockWhenExhausted(true);
-        if (connectionLimit != null && !connectionLimit.isEmpty())
-            poolConfig.setMaxTotal((int) StringUtil.parseLong(connectionLimit));
+        this(redisServer, 1);
+    }
+
+    /**
+     * @param redisServer redis url of the primary shard
+     * @param threads amount of threads that will use the cache at the same time
+     */
+    public ApiCache(String redisServer, int threads) {
+        // Shards
+        List<String> redisServers = new ArrayList<>();
+        redisServers.add(redisServer);
+        for (String shardServer : System.getenv().getOrDefault("REDIS_SHARD_URLS", "").split(","))
+            if (!shardServer.trim().isEmpty())
+                redisServers.add(shardServer.trim());
+        redisShards = new RedisShards(redisServers, threads);
+        // Codecs
+        Gson gson = new GsonBuilder().registerTypeAdapterFactory(new ModelTypeAdapterFactory()).create();
+        boolean binary = !System.getenv().getOrDefault("CACHE_CODEC", "binary").equalsIgnoreCase("json");
+        int compressThreshold = (int) StringUtil.parseLong(System.getenv().getOrDefault(
+                "CACHE_COMPRESS_THRESHOLD", "512"));
+        streamCodec = new StreamCodec(gson, binary, compressThreshold);
+        userCodec = new UserCodec(gson, binary, compressThreshold);
+        gameCodec = new GameCodec(gson, binary, compressThreshold);
+        // Storage layout
+        if (System.getenv().getOrDefault("CACHE_LAYOUT", "keys").equalsIgnoreCase("hash"))
+            cacheLayout = new HashCacheLayout((int) StringUtil.parseLong(System.getenv().getOrDefault(
+                    "CACHE_HASH_BUCKETS", "4096")),
+                    (int) StringUtil.parseLong(System.getenv().getOrDefault("CACHE_HASH_SWEEP", "20")));
         else
-            poolConfig.setMaxTotal(1);
-        // Create the pool
-        boolean useSsl = Boolean.parseBoolean(System.getenv().getOrDefault("REDIS_SECURE", "true"));
-        if (useSsl)
-            redisServer = redisServer.replace("redis://", "rediss://");
-        URI uri = URI.create(redisServer);
-        if (JedisURIHelper.isValid(uri)) {
-            String host = uri.getHost();
-            int port = uri.getPort();
-            redisPassword = JedisURIHelper.getPassword(uri);
-            if (!useSsl) {
-                Logger.warn("Connecting to Redis without SSL");
-                redisPool = new JedisPool(poolConfig, host, port, Protocol.DEFAULT_TIMEOUT, redisPassword,
-                        Protocol.DEFAULT_DATABASE, null);
-            }
-            else {
-                try {
-                    SSLSocketFactory sslSocketFactory = getSocketFactory();
-                    SSLParameters sslParameters = new SSLParameters();
-                    redisPool = new JedisPool(poolConfig, uri, sslSocketFactory, sslParameters, null);
-                }
-                catch (CertificateException | NoSuchAlgorithmException | KeyStoreException | IOException |
-                        KeyManagementException e) {
-                    Logger.exception(e);
-                    redisPool = new JedisPool();
-                }
-            }
+            cacheLayout = new KeyCacheLayout();
+        // Stale-while-revalidate timeouts
+        softTimeout = (int) Math.max(1, StringUtil.parseLong(System.getenv().getOrDefault("CACHE_SOFT_TIMEOUT",
+                String.valueOf(TIMEOUT))));
+        hardTimeout = (int) Math.max(softTimeout, StringUtil.parseLong(System.getenv().getOrDefault(
+                "CACHE_HARD_TIMEOUT", String.valueOf(TIMEOUT_HOUR))));
+        // Negative cache timeouts
+        userTombstoneTimeout = (int) Math.max(1, StringUtil.parseLong(System.getenv().getOrDefault(
+                "NEGATIVE_CACHE_USER_TIMEOUT", String.valueOf(TIMEOUT_HOUR))));
+        gameTombstoneTimeout = (int) Math.max(1, StringUtil.parseLong(System.getenv().getOrDefault(
+                "NEGATIVE_CACHE_GAME_TIMEOUT", String.valueOf(TIMEOUT_HOUR))));
+        streamTombstoneTimeout = (int) Math.max(1, StringUtil.parseLong(System.getenv().getOrDefault(
+                "NEGATIVE_CACHE_STREAM_TIMEOUT", String.valueOf(TIMEOUT))));
+        // Near cache
+        nodeId = UUID.randomUUID().toString();
+        int nearCacheSize = (int) StringUtil.parseLong(System.getenv().getOrDefault("NEAR_CACHE_SIZE", "1000"));
+        int nearCacheTimeout = (int) StringUtil.parseLong(System.getenv().getOrDefault("NEAR_CACHE_TIMEOUT", "30"));
+        nearCache = new NearCache<>(nearCacheSize, nearCacheTimeout * 1000L);
+        nearBinaryCache = new NearCache<>(nearCacheSize, nearCacheTimeout * 1000L);
+        if (nearCache.isEnabled()) {
+            Thread invalidatorThread = new Thread(new NearCacheInvalidator(nodeId, redisShards.getPrimary()::createConnection,
+                    this::invalidateLocal, this::clearLocal));
+            invalidatorThread.setName("Near Cache Invalidation Thread");
+            invalidatorThread.setDaemon(true);
+            invalidatorThread.start();
         }
-        else {
-            redisPool = new JedisPool();
-            redisPassword = "";
+    }
+
+    /**
+     * Remove a key from the near caches of this node
+     * @param key key to remove
+     */
+    private void invalidateLocal(String key) {
+        nearCache.invalidate(key);
+        nearBinaryCache.invalidate(key);
+    }
+
+    /**
+     * Remove all keys from the near caches of this node
+     */
+    private void clearLocal() {
+        nearCache.clear();
+        nearBinaryCache.clear();
+    }
+
+    /**
+     * Remove keys from the near cache of this node and notify other nodes that they changed
+     * Invalidations are always published on the primary shard, because pub/sub is not shared between servers. Call it
+     * after the connection the keys were written on is returned to the pool and after the writes are done, so a writer
+     * never holds two pooled connections and a read in between can not cache the old value again.
+     * @param keys keys that were written
+     */
+    private void invalidate(Collection<String> keys) {
+        if (!nearCache.isEnabled() || keys.isEmpty())
+            return;
+        for (String key : keys)
+            invalidateLocal(key);
+        try (Jedis primary = getAuthenticatedJedis()) {
+            primary.publish(NearCacheInvalidator.CHANNEL, NearCacheInvalidator.createMessage(nodeId, keys));
+        } catch (Exception e) {
+            Logger.exception(e);
         }
-        gson = new Gson();
     }
 
     /**
-     * Create a socket factory with the env var trusted cert
-     * @return socket factory that trusts the env var
+     * Get near cache hit/miss/eviction counters and pool usage
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.add("near_cache", getNearCacheStats(nearCache));
+        stats.add("near_cache_binary", getNearCacheStats(nearBinaryCache));
+        stats.add("pool", redisShards.getStats());
+        stats.add("layout", cacheLayout.getStats());
+        JsonObject negative = new JsonObject();
+        negative.add("users", userStats.toJson());
+        negative.add("games", gameStats.toJson());
+        negative.add("streams", streamStats.toJson());
+        stats.add("negative", negative);
+        return stats;
+    }
+
+    /**
+     * Get counters for a near cache
+     * @param nearCache near cache
+     * @return stats json
      */
-    private SSLSocketFactory getSocketFactory() throws CertificateException, NoSuchAlgorithmException,
-            KeyStoreException, IOException, KeyManagementException {
-        String cert = System.getenv().getOrDefault("REDIS_TRUST", "")
-                .replace("\\n", "\n");
-        EnvKeyStore keyStore = EnvKeyStore.createFromPEMStrings(cert,
-                new BigInteger(130, new SecureRandom()).toString(32));
-        String algorithm = TrustManagerFactory.getDefaultAlgorithm();
-        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(algorithm);
-        trustManagerFactory.init(keyStore.keyStore());
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, trustManagerFactory.getTrustManagers(), new SecureRandom());
-        return sslContext.getSocketFactory();
+    public static JsonObject getNearCacheStats(NearCache<?> nearCache) {
+        JsonObject near = new JsonObject();
+        near.addProperty("size", nearCache.size());
+        near.addProperty("hits", nearCache.getHits());
+        near.addProperty("misses", nearCache.getMisses());
+        near.addProperty("evictions", nearCache.getEvictions());
+        near.addProperty("invalidations", nearCache.getInvalidations());
+        return near;
     }
 
     /**
@@ -129,22 +288,51 @@ public class ApiCache {
      */
     @Nullable
     public String get(String key) {
-        String value = null;
-        try (Jedis redis = getAuthenticatedJedis()) {
-            value = redis.get(key);
+        String value = nearCache.get(key);
+        if (value != null)
+            return value;
+        try (Jedis redis = getJedis(key)) {
+            if (!nearCache.isEnabled())
+                return redis.get(key);
+            // Read the time to live with the value so the near cache does not outlive the key
+            Pipeline pipeline = redis.pipelined();
+            Response<String> response = pipeline.get(key);
+            Response<Long> ttl = pipeline.pttl(key);
+            pipeline.sync();
+            value = response.get();
+            nearCache.put(key, value, getNearTimeToLive(ttl.get()));
         } catch (Exception e) {
             Logger.exception(e);
         }
         return value;
     }
 
+    /**
+     * Borrow a connection to the primary shard from the pool
+     * Queues are kept on the primary shard. Connections are authenticated when the pool creates them. Close the
+     * connection to return it to the pool.
+     * @return pooled connection
+     */
     public Jedis getAuthenticatedJedis() {
-        Jedis jedis = redisPool.getResource();
-        if (!redisPassword.isEmpty())
-        jedis.auth(redisPassword);
-        if (!jedis.isConnected())
-            jedis.connect();
-        return jedis;
+        return redisShards.getPrimary().getResource();
+    }
+
+    /**
+     * Create a connection to the primary shard that is not managed by the pool
+     * Subscribing blocks the connection, so subscribers need their own. The caller is responsible for closing it.
+     * @return connected and authenticated jedis instance
+     */
+    public Jedis createSubscriberConnection() {
+        return redisShards.getPrimary().createConnection();
+    }
+
+    /**
+     * Borrow a connection to the shard a key is stored on
+     * @param key redis key
+     * @return pooled connection
+     */
+    private Jedis getJedis(String key) {
+        return redisShards.getShard(key).getResource();
     }
 
     /**
@@ -169,11 +357,14 @@ public class ApiCache {
      * @param timeout cache expire time in seconds
      */
     public void set(String key, String value, int timeout) {
-        try (Jedis redis = getAuthenticatedJedis()) {
+        try (Jedis redis = getJedis(key)) {
             redis.setex(key, timeout, value);
         } catch (Exception e) {
             Logger.exception(e);
+            return;
         }
+        invalidate(Collections.singletonList(key));
+        nearCache.put(key, value, timeout * 1000L);
     }
 
     /**
@@ -185,131 +376,559 @@ public class ApiCache {
     }
 
     /**
-     * Get user names from Redis.
-     * Any user names that do not exist will be requested in a bulk request from twitch
-     * @param ids ids to convert to user names
-     * @return map with ids as keys and user names as values - user names not in cache will be null
+     * Set multiple keys in a single round trip per shard
+     * Null keys and values are skipped.
+     * @param values key (key) - value (value)
+     * @param timeout cache expire time in seconds
      */
-    public Map<String, String> getUserNames(List<String> ids) {
-        return getNamesForIds(ids, Id.USER);
+    public void setMultiple(Map<String, String> values, int timeout) {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, String> value : values.entrySet())
+            if (value.getKey() != null && value.getValue() != null)
+                keys.add(value.getKey());
+        if (keys.isEmpty())
+            return;
+        List<List<String>> shardWritten = redisShards.forEachShard(redisShards.groupByShard(keys, key -> key),
+                (shard, shardKeys) -> {
+            try (Jedis redis = shard.getResource()) {
+                Pipeline pipeline = redis.pipelined();
+                for (String key : shardKeys)
+                    pipeline.setex(key, timeout, values.get(key));
+                pipeline.sync();
+            } catch (Exception e) {
+                Logger.exception(e);
+                return Collections.<String>emptyList();
+            }
+            return shardKeys;
+        });
+        invalidate(flatten(shardWritten));
     }
 
     /**
-     * Set user gson string
-     * @param userNameIdMap id (key) - user gson (value)
+     * Set a key that is considered stale after the soft timeout and removed after the hard timeout
+     * A content hash is stored next to the value and used as its ETag.
+     * @param key key to set
+     * @param value value to set the key
+     * @param softTimeout seconds before the value should be refreshed
+     * @param hardTimeout cache expire time in seconds
+     * @see #getWithSoftTimeout(String)
      */
-    public void setUsersJson(Map<String, String> userNameIdMap) {
-        setUserOrGameJson(userNameIdMap, Id.USER);
+    public void setWithSoftTimeout(String key, String value, int softTimeout, int hardTimeout) {
+        String softKey = SOFT_TIMEOUT_PREFIX + key;
+        String eTagKey = ETAG_PREFIX + key;
+        String eTag = HeaderUtil.createETag(value);
+        try (Jedis redis = getJedis(key)) {
+            Pipeline pipeline = redis.pipelined();
+            pipeline.setex(key, hardTimeout, value);
+            pipeline.setex(softKey, softTimeout, "1");
+            pipeline.setex(eTagKey, hardTimeout, eTag);
+            pipeline.sync();
+        } catch (Exception e) {
+            Logger.exception(e);
+            return;
+        }
+        invalidate(Arrays.asList(key, softKey, eTagKey));
+        nearCache.put(key, value, hardTimeout * 1000L);
+        nearCache.put(softKey, "1", softTimeout * 1000L);
+        nearCache.put(eTagKey, eTag, hardTimeout * 1000L);
     }
 
     /**
-     * Get game names from Redis.
-     * Any game names that do not exist will be requested in a bulk request from twitch
-     * @param ids ids to convert to game names
-     * @return map with ids as keys and game names as values - game names not in cache will be null
+     * Set a key with the default soft and hard timeouts
+     * @see #setWithSoftTimeout(String, String, int, int)
      */
-    public Map<String, String> getGameNames(List<String> ids) {
-        return getNamesForIds(ids, Id.GAME);
+    public void setWithSoftTimeout(String key, String value) {
+        setWithSoftTimeout(key, value, softTimeout, hardTimeout);
     }
 
     /**
-     * Get game or id names from Redis.
-     * Any names that do not exist will be requested in a bulk request from twitch
-     * @param ids ids to convert to names
-     * @return map with ids as keys and names as values - names not in cache will be null
+     * Get a value set with a soft timeout
+     * @param key key to get
+     * @return cached value - the value is null if the hard timeout has passed
      */
-    private Map<String, String> getNamesForIds(List<String> ids, Id type) {
-        // Determine key prefix
-        String keyPrefix;
-        switch (type) {
-            case USER:
-                keyPrefix = USER_NAME_FIELD_PREFIX;
-                break;
-            case GAME:
-                keyPrefix = GAME_NAME_FIELD_PREFIX;
-                break;
-            default:
-                throw new IllegalArgumentException("Type must be GAME or USER");
+    public CachedValue getWithSoftTimeout(String key) {
+        return getWithSoftTimeout(key, null);
+    }
+
+    /**
+     * Get a value set with a soft timeout unless the requester already has it
+     * When the stored ETag matches the If-None-Match header only the ETag and soft timeout keys are read. The soft
+     * timeout and ETag keys are stored on the shard of the value key.
+     * @param key key to get
+     * @param ifNoneMatch If-None-Match header of the request
+     * @return cached value - the value is null if the hard timeout has passed or it was not modified
+     */
+    public CachedValue getWithSoftTimeout(String key, @Nullable String ifNoneMatch) {
+        String softKey = SOFT_TIMEOUT_PREFIX + key;
+        String eTagKey = ETAG_PREFIX + key;
+        if (ifNoneMatch != null) {
+            Map<String, String> values = mgetWithPrefix("", Arrays.asList(eTagKey, softKey), valueKey -> key);
+            String eTag = values.get(eTagKey);
+            if (HeaderUtil.matchesETag(ifNoneMatch, eTag))
+                return new CachedValue(null, values.get(softKey) == null, eTag, true);
+        }
+        Map<String, String> values = mgetWithPrefix("", Arrays.asList(key, softKey, eTagKey), valueKey -> key);
+        String value = values.get(key);
+        String eTag = values.get(eTagKey);
+        if (eTag == null && value != null)
+            eTag = HeaderUtil.createETag(value);
+        return new CachedValue(value, values.get(softKey) == null, eTag);
+    }
+
+    /**
+     * Set multiple keys with the default cache timeout
+     * @see #setMultiple(Map, int)
+     */
+    public void setMultiple(Map<String, String> values) {
+        setMultiple(values, TIMEOUT);
+    }
+
+    /**
+     * Set multiple keys that do not exist in a single atomic round trip per shard
+     * Keys that already exist keep their value and expire time. Null keys and values are skipped.
+     * @param values key (key) - value (value)
+     * @param timeout cache expire time in seconds for keys that are set
+     * @return keys that were set
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    public List<String> setMultipleIfAbsent(Map<String, String> values, int timeout) {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, String> value : values.entrySet())
+            if (value.getKey() != null && value.getValue() != null)
+                keys.add(value.getKey());
+        List<String> written = new ArrayList<>();
+        if (keys.isEmpty())
+            return written;
+        List<List<String>> shardWritten = redisShards.forEachShard(redisShards.groupByShard(keys, key -> key),
+                (shard, shardKeys) -> {
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(timeout));
+            for (String key : shardKeys)
+                args.add(values.get(key));
+            List<String> shardKeysWritten = new ArrayList<>();
+            try (Jedis redis = shard.getResource()) {
+                Object result = RedisScript.SET_IF_ABSENT.eval(redis, shardKeys, args);
+                if (result instanceof List)
+                    for (Object key : (List<?>) result)
+                        shardKeysWritten.add(String.valueOf(key));
+            } catch (Exception e) {
+                Logger.exception(e);
+            }
+            return shardKeysWritten;
+        });
+        written.addAll(flatten(shardWritten));
+        invalidate(written);
+        return written;
+    }
+
+    /**
+     * Attempt to acquire a lock shared by all nodes
+     * @param key key to lock
+     * @param owner unique value identifying the owner of the lock
+     * @param timeout milliseconds before the lock is released if it is not unlocked
+     * @return lock was acquired
+     */
+    public boolean tryLock(String key, String owner, long timeout) {
+        try (Jedis redis = getJedis(LOCK_PREFIX + key)) {
+            return "OK".equals(redis.set(LOCK_PREFIX + key, owner, "NX", "PX", timeout));
+        } catch (Exception e) {
+            Logger.exception(e);
+        }
+        return false;
+    }
+
+    /**
+     * Release a lock if it is still held by the owner
+     * @param key locked key
+     * @param owner value passed to tryLock
+     */
+    public void unlock(String key, String owner) {
+        try (Jedis redis = getJedis(LOCK_PREFIX + key)) {
+            UNLOCK_SCRIPT.eval(redis, Collections.singletonList(LOCK_PREFIX + key),
+                    Collections.singletonList(owner));
+        } catch (Exception e) {
+            Logger.exception(e);
+        }
+    }
+
+    /**
+     * Take tokens from a rate limit bucket shared by all nodes
+     * The bucket refills its full size every minute. Tokens are only taken if at least the reserved fraction of the
+     * bucket is left afterwards.
+     * @param bucket bucket name
+     * @param cost tokens to take
+     * @param reserve fraction of the bucket size that must be left after taking the tokens
+     * @param defaultLimit bucket size used before a response has reported one
+     * @return admitted (1 or 0), tokens left, bucket size - null if the bucket could not be read
+     */
+    @Nullable
+    List<Long> acquireRateLimit(String bucket, int cost, double reserve, int defaultLimit) {
+        String key = RATE_LIMIT_PREFIX + bucket;
+        try (Jedis redis = getJedis(key)) {
+            Object result = RATE_LIMIT_ACQUIRE_SCRIPT.eval(redis, Collections.singletonList(key), Arrays.asList(
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(cost), String.valueOf(reserve),
+                    String.valueOf(defaultLimit), String.valueOf(RATE_LIMIT_TIMEOUT)));
+            if (result instanceof List && ((List<?>) result).size() == 3) {
+                List<Long> decision = new ArrayList<>();
+                for (Object value : (List<?>) result)
+                    decision.add(value instanceof Long ? (Long) value : 0);
+                return decision;
+            }
+        } catch (Exception e) {
+            Logger.exception(e);
         }
-        // Get ids stored on redis
-        Map<String, String> cachedNames = mgetWithPrefix(keyPrefix, ids);
-        // Map ids to names
-        Map<String, String> nameIdMap = new HashMap<>();
+        return null;
+    }
+
+    /**
+     * Store the rate limit reported by a response in a bucket shared by all nodes
+     * Tokens taken by other nodes whose responses have not been observed yet are kept taken.
+     * @param bucket bucket name
+     * @param limit bucket size
+     * @param remaining tokens left
+     * @param reset epoch milliseconds the bucket is full again
+     * @return tokens left in the shared bucket - -1 if it could not be written
+     */
+    long observeRateLimit(String bucket, long limit, long remaining, long reset) {
+        String key = RATE_LIMIT_PREFIX + bucket;
+        try (Jedis redis = getJedis(key)) {
+            Object result = RATE_LIMIT_OBSERVE_SCRIPT.eval(redis, Collections.singletonList(key), Arrays.asList(
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(limit), String.valueOf(remaining),
+                    String.valueOf(reset), String.valueOf(RATE_LIMIT_TIMEOUT)));
+            if (result instanceof Long)
+                return (Long) result;
+        } catch (Exception e) {
+            Logger.exception(e);
+        }
+        return -1;
+    }
+
+    /**
+     * Get cached users
+     * @param ids user ids
+     * @return map with ids as keys and users as values - users not in cache will be null
+     */
+    public Map<String, @Nullable User> getUsers(List<String> ids) {
+        return getModels(USER_NAME_FIELD_PREFIX, ids, userCodec, TIMEOUT_DAY, userStats, User::new);
+    }
+
+    /**
+     * Cache users that are not already cached
+     * @param users id (key) - user (value)
+     */
+    public void setUsers(Map<String, User> users) {
+        setModelsIfAbsent(USER_NAME_FIELD_PREFIX, users, userCodec, TIMEOUT_DAY);
+    }
+
+    /**
+     * Cache ids that do not belong to a user
+     * They are read as empty users until the negative cache timeout passes.
+     * @param ids user ids
+     */
+    public void setMissingUsers(Collection<String> ids) {
+        setTombstonesIfAbsent(USER_NAME_FIELD_PREFIX, ids, userTombstoneTimeout, userStats);
+    }
+
+    /**
+     * Get cached games
+     * @param ids game ids
+     * @return map with ids as keys and games as values - games not in cache will be null
+     */
+    public Map<String, @Nullable Game> getGames(List<String> ids) {
+        return getModels(GAME_NAME_FIELD_PREFIX, ids, gameCodec, TIMEOUT_DAY, gameStats, Game::new);
+    }
+
+    /**
+     * Cache games that are not already cached
+     * @param games id (key) - game (value)
+     */
+    public void setGames(Map<String, Game> games) {
+        setModelsIfAbsent(GAME_NAME_FIELD_PREFIX, games, gameCodec, TIMEOUT_DAY);
+    }
+
+    /**
+     * Cache ids that do not belong to a game
+     * They are read as empty games until the negative cache timeout passes.
+     * @param ids game ids
+     */
+    public void setMissingGames(Collection<String> ids) {
+        setTombstonesIfAbsent(GAME_NAME_FIELD_PREFIX, ids, gameTombstoneTimeout, gameStats);
+    }
+
+    /**
+     * Get and decode models stored with a common key prefix
+     * @param keyPrefix key prefix
+     * @param ids model ids
+     * @param codec model codec
+     * @param timeout cache expire time in seconds models are written with
+     * @param stats lookup counters of the model type
+     * @param empty creates the empty model returned for ids cached as missing
+     * @return map with ids as keys and models as values - models not in cache will be null
+     */
+    private <T> Map<String, @Nullable T> getModels(String keyPrefix, List<String> ids, CacheCodec<T> codec,
+                                                   int timeout, ModelCacheStats stats, Supplier<T> empty) {
+        Map<String, byte[]> values = mgetBinaryWithPrefix(keyPrefix, ids, timeout);
+        Map<String, T> models = new HashMap<>();
         for (String id : ids) {
-            String key = keyPrefix + id;
-            nameIdMap.put(id, cachedNames.getOrDefault(key, null));
+            byte[] value = values.get(keyPrefix + id);
+            T model;
+            if (CacheCodec.isTombstone(value)) {
+                stats.negativeHits.incrementAndGet();
+                model = empty.get();
+            }
+            else {
+                model = codec.decode(value);
+                if (model != null)
+                    stats.hits.incrementAndGet();
+            }
+            stats.lookups.incrementAndGet();
+            models.put(id, model);
         }
-        return nameIdMap;
+        return models;
+    }
+
+    /**
+     * Store tombstones for ids that are not already cached
+     * @param keyPrefix key prefix
+     * @param ids ids that do not exist
+     * @param timeout cache expire time in seconds
+     * @param stats counters of the model type
+     */
+    private void setTombstonesIfAbsent(String keyPrefix, Collection<String> ids, int timeout,
+                                       ModelCacheStats stats) {
+        Map<String, byte[]> values = new HashMap<>();
+        for (String id : ids)
+            if (id != null && !id.isEmpty())
+                values.put(id, CacheCodec.encodeTombstone());
+        stats.tombstones.addAndGet(values.size());
+        setMultipleBinaryIfAbsent(keyPrefix, values, timeout);
+    }
+
+    /**
+     * Encode and store models that are not already cached
+     * @param keyPrefix key prefix
+     * @param models id (key) - model (value)
+     * @param codec model codec
+     * @param timeout cache expire time in seconds
+     */
+    private <T> void setModelsIfAbsent(String keyPrefix, Map<String, T> models, CacheCodec<T> codec, int timeout) {
+        Map<String, byte[]> values = new HashMap<>();
+        for (Map.Entry<String, T> model : models.entrySet())
+            if (model.getKey() != null && model.getValue() != null)
+                values.put(model.getKey(), codec.encode(model.getValue()));
+        setMultipleBinaryIfAbsent(keyPrefix, values, timeout);
     }
 
     /**
      * Get multiple keys each with a common prefix
+     * Keys are read from the shard they are stored on. Shards are read in parallel.
      * @param keyPrefix prefix to be added to all keys
      * @param keys keys to get
      * @return map with redis keys as the key and possibly null value if key did not exist
      */
     private Map<String, String> mgetWithPrefix(String keyPrefix, List<String> keys) {
+        return mgetWithPrefix(keyPrefix, keys, prefixedKey -> prefixedKey);
+    }
+
+    /**
+     * @see #mgetWithPrefix(String, List)
+     * @param shardKey returns the key used to find the shard of a prefixed key
+     */
+    private Map<String, String> mgetWithPrefix(String keyPrefix, List<String> keys,
+                                               Function<String, String> shardKey) {
         Map<String, String> map = new HashMap<>();
-        String[] prefixedKeys = new String[keys.size()];
-        for (int keyIndex = 0; keyIndex < keys.size(); keyIndex++)
-            prefixedKeys[keyIndex] = keyPrefix + String.valueOf(keys.get(keyIndex));
-        List<String> values = new ArrayList<>();
-        if (keys.size() > 0) {
-            try (Jedis redis = getAuthenticatedJedis()) {
-                values.addAll(redis.mget(prefixedKeys));
+        // Check near cache
+        List<String> missingKeys = new ArrayList<>();
+        for (String key : keys) {
+            String prefixedKey = keyPrefix + String.valueOf(key);
+            String value = nearCache.get(prefixedKey);
+            map.put(prefixedKey, value);
+            if (value == null)
+                missingKeys.add(prefixedKey);
+        }
+        if (missingKeys.isEmpty())
+            return map;
+        // Fetch remaining from redis
+        List<Map<String, String>> shardValues = redisShards.forEachShard(
+                redisShards.groupByShard(missingKeys, shardKey), (shard, shardKeys) -> {
+            Map<String, String> values = new HashMap<>();
+            try (Jedis redis = shard.getResource()) {
+                // Read the time to live with the values so the near cache does not outlive the keys
+                Pipeline pipeline = redis.pipelined();
+                Response<List<String>> response = pipeline.mget(shardKeys.toArray(new String[0]));
+                List<Response<Long>> ttls = new ArrayList<>();
+                if (nearCache.isEnabled())
+                    for (String key : shardKeys)
+                        ttls.add(pipeline.pttl(key));
+                pipeline.sync();
+                List<String> shardKeyValues = response.get();
+                if (shardKeyValues.size() == shardKeys.size()) {
+                    for (int keyIndex = 0; keyIndex < shardKeys.size(); keyIndex++) {
+                        String value = shardKeyValues.get(keyIndex);
+                        values.put(shardKeys.get(keyIndex), value);
+                        if (!ttls.isEmpty())
+                            nearCache.put(shardKeys.get(keyIndex), value,
+                                    getNearTimeToLive(ttls.get(keyIndex).get()));
+                    }
+                }
             } catch (Exception e) {
                 Logger.exception(e);
             }
+            return values;
+        });
+        for (Map<String, String> values : shardValues)
+            map.putAll(values);
+        return map;
+    }
+
+    /**
+     * Get the time a value can be near cached
+     * @param ttl remaining time to live of the key in milliseconds as returned by PTTL
+     * @return milliseconds - 0 if the key does not exist or expired
+     */
+    private static long getNearTimeToLive(@Nullable Long ttl) {
+        if (ttl == null || ttl == -2)
+            return 0;
+        if (ttl == -1)
+            return Long.MAX_VALUE;
+        return Math.max(0, ttl);
+    }
+
+    /**
+     * Get multiple binary keys each with a common prefix
+     * Values are read with the configured cache layout from the shard of their prefixed key. Shards are read in
+     * parallel.
+     * @param keyPrefix prefix to be added to all keys
+     * @param keys keys to get
+     * @param timeout cache expire time in seconds values with this prefix are written with
+     * @return map with redis keys as the key and possibly null value if key did not exist
+     */
+    private Map<String, byte[]> mgetBinaryWithPrefix(String keyPrefix, List<String> keys, int timeout) {
+        Map<String, byte[]> map = new HashMap<>();
+        // Check near cache
+        List<String> missingKeys = new ArrayList<>();
+        for (String key : keys) {
+            String prefixedKey = keyPrefix + String.valueOf(key);
+            byte[] value = nearBinaryCache.get(prefixedKey);
+            map.put(prefixedKey, value);
+            if (value == null)
+                missingKeys.add(String.valueOf(key));
         }
-        if (values.size() != prefixedKeys.length)
-            for (String key : prefixedKeys)
-                map.put(key, null);
-        else
-            for (int keyIndex = 0; keyIndex < prefixedKeys.length; keyIndex++)
-                map.put(prefixedKeys[keyIndex], values.get(keyIndex));
+        if (missingKeys.isEmpty())
+            return map;
+        // Fetch remaining from redis
+        List<Map<String, byte[]>> shardValues = redisShards.forEachShard(
+                redisShards.groupByShard(missingKeys, key -> keyPrefix + key), (shard, shardKeys) -> {
+            try (Jedis redis = shard.getResource()) {
+                // Read the time to live with the values so the near cache does not outlive the keys
+                Map<String, Long> timesToLive = nearBinaryCache.isEnabled() ? new HashMap<>() : null;
+                Map<String, byte[]> values = cacheLayout.get(redis, keyPrefix, shardKeys, timeout, timesToLive);
+                if (timesToLive != null)
+                    for (Map.Entry<String, byte[]> value : values.entrySet())
+                        nearBinaryCache.put(keyPrefix + value.getKey(), value.getValue(),
+                                getNearTimeToLive(timesToLive.get(value.getKey())));
+                return values;
+            } catch (Exception e) {
+                Logger.exception(e);
+            }
+            return Collections.<String, byte[]>emptyMap();
+        });
+        for (Map<String, byte[]> values : shardValues)
+            for (Map.Entry<String, byte[]> value : values.entrySet())
+                map.put(keyPrefix + value.getKey(), value.getValue());
         return map;
     }
 
     /**
-     * Set user names
-     * @param gameNames id (key) - user name (value)
+     * Add a prefix to keys
+     * @param keyPrefix prefix
+     * @param keys keys
+     * @return prefixed keys
      */
-    public void setGamesJson(Map<String, String> gameNames) {
-        setUserOrGameJson(gameNames, Id.GAME);
+    private static List<String> prefixKeys(String keyPrefix, Collection<String> keys) {
+        List<String> prefixedKeys = new ArrayList<>();
+        for (String key : keys)
+            prefixedKeys.add(keyPrefix + key);
+        return prefixedKeys;
     }
 
     /**
-     * Store user or game json
-     * @param jsonMap <id, json>
+     * Join the keys written on each shard
+     * @param shardKeys keys of each shard
+     * @return keys
      */
-    private void setUserOrGameJson(Map<String, String> jsonMap, Id type) {
-        // Determine key prefix
-        String keyPrefix;
-        int keyTimeout;
-        switch (type) {
-            case USER:
-                keyPrefix = USER_NAME_FIELD_PREFIX;
-                keyTimeout = TIMEOUT_DAY;
-                break;
-            case GAME:
-                keyPrefix = GAME_NAME_FIELD_PREFIX;
-                keyTimeout = TIMEOUT_DAY;
-                break;
-            default:
-                throw new IllegalArgumentException("Type must be GAME or USER");
-        }
-        try (Jedis redis = getAuthenticatedJedis()) {
-            for (Map.Entry<String, String> idJson : jsonMap.entrySet()) {
-                if (idJson.getKey() == null || idJson.getValue() == null)
-                    continue;
-                String key = keyPrefix + idJson.getKey();
-                long result = redis.setnx(key, idJson.getValue());
-                if (result == 1)
-                    redis.expire(key, keyTimeout);
+    private static List<String> flatten(List<List<String>> shardKeys) {
+        List<String> keys = new ArrayList<>();
+        for (List<String> keysOfShard : shardKeys)
+            keys.addAll(keysOfShard);
+        return keys;
+    }
+
+    /**
+     * Split values by the shard of their prefixed key
+     * @param keyPrefix prefix to be added to all keys
+     * @param values key (key) - value (value)
+     * @return shard (key) - keys (value)
+     */
+    private Map<RedisPoolManager, List<String>> groupByShard(String keyPrefix, Map<String, ?> values) {
+        return redisShards.groupByShard(values.keySet(), key -> keyPrefix + key);
+    }
+
+    /**
+     * Get the values of keys
+     * @param values key (key) - value (value)
+     * @param keys keys to keep
+     * @return key (key) - value (value) for the kept keys
+     */
+    private static <T> Map<String, T> subMap(Map<String, T> values, List<String> keys) {
+        Map<String, T> subMap = new HashMap<>();
+        for (String key : keys)
+            subMap.put(key, values.get(key));
+        return subMap;
+    }
+
+    /**
+     * Set multiple binary keys in a single round trip per shard
+     * @param keyPrefix prefix to be added to all keys
+     * @param values key (key) - value (value)
+     * @param timeout cache expire time in seconds
+     */
+    private void setMultipleBinary(String keyPrefix, Map<String, byte[]> values, int timeout) {
+        if (values.isEmpty())
+            return;
+        List<List<String>> shardWritten = redisShards.forEachShard(groupByShard(keyPrefix, values),
+                (shard, shardKeys) -> {
+            try (Jedis redis = shard.getResource()) {
+                cacheLayout.set(redis, keyPrefix, subMap(values, shardKeys), timeout);
+            } catch (Exception e) {
+                Logger.exception(e);
+                return Collections.<String>emptyList();
             }
-        } catch (Exception e) {
-            Logger.exception(e);
-        }
+            return prefixKeys(keyPrefix, shardKeys);
+        });
+        invalidate(flatten(shardWritten));
+    }
+
+    /**
+     * Set multiple binary keys that do not exist in a single atomic round trip per shard
+     * @param keyPrefix prefix to be added to all keys
+     * @param values key (key) - value (value)
+     * @param timeout cache expire time in seconds for keys that are set
+     */
+    private void setMultipleBinaryIfAbsent(String keyPrefix, Map<String, byte[]> values, int timeout) {
+        if (values.isEmpty())
+            return;
+        List<List<String>> shardWritten = redisShards.forEachShard(groupByShard(keyPrefix, values),
+                (shard, shardKeys) -> {
+            try (Jedis redis = shard.getResource()) {
+                return prefixKeys(keyPrefix, cacheLayout.setIfAbsent(redis, keyPrefix, subMap(values, shardKeys),
+                        timeout));
+            } catch (Exception e) {
+                Logger.exception(e);
+                return Collections.<String>emptyList();
+            }
+        });
+        invalidate(flatten(shardWritten));
     }
 
     /**
@@ -320,11 +939,13 @@ public class ApiCache {
     @SuppressWarnings("UnusedReturnValue")
     public Long remove(String key) {
         long ret = 0L;
-        try (Jedis redis = getAuthenticatedJedis()) {
+        try (Jedis redis = getJedis(key)) {
             ret = redis.del(key);
         } catch (Exception e) {
             Logger.exception(e);
+            return ret;
         }
+        invalidate(Collections.singletonList(key));
         return ret;
     }
 
@@ -363,7 +984,7 @@ public class ApiCache {
      */
     public List<String> getFollows(String fromId) {
         List<String> followsList = new ArrayList<>();
-        try (Jedis redis = getAuthenticatedJedis()) {
+        try (Jedis redis = getJedis(FOLLOW_PREFIX + fromId)) {
             Set<String> follows = redis.smembers(FOLLOW_PREFIX + fromId);
             followsList.addAll(follows);
         } catch (Exception e) {
@@ -378,15 +999,6 @@ public class ApiCache {
      * @param toIds id the user follows
      */
     void setFollows(String fromId, List<String> toIds) {
-        // Remove old follows
-        List<String> follows = getFollows(fromId);
-        try (Jedis redis = getAuthenticatedJedis()) {
-            if (follows.size() > 0)
-                redis.srem(FOLLOW_PREFIX + fromId, follows.toArray(new String[0]));
-        } catch (Exception e) {
-            Logger.exception(e);
-        }
-        // Set follows
         setFollowInSet(fromId, toIds, FOLLOW_PREFIX, FollowQueue.FollowType.CHANNEL);
     }
 
@@ -397,16 +1009,20 @@ public class ApiCache {
      */
     public long getFollowIdCacheTime(String fromId, FollowQueue.FollowType followType) {
         String prefix = "";
+        String setPrefix = "";
         switch (followType) {
             case CHANNEL:
                 prefix = FOLLOW_TIME_PREFIX;
+                setPrefix = FOLLOW_PREFIX;
                 break;
             case GAME:
                 prefix = FOLLOW_TIME_GAME_PREFIX;
+                setPrefix = FOLLOW_GAME_PREFIX;
                 break;
         }
         long time = 0;
-        try (Jedis redis = getAuthenticatedJedis()) {
+        // The time key is stored on the shard of the follows set
+        try (Jedis redis = getJedis(setPrefix + fromId)) {
             String timeString = redis.get(prefix + fromId);
             if (timeString != null && !timeString.isEmpty()) {
                 try {
@@ -425,25 +1041,29 @@ public class ApiCache {
      * @param streams streams to cache
      */
     public void cacheStreams(List<Stream> streams) {
-        try (Jedis redis = getAuthenticatedJedis()) {
-            for (Stream stream : streams) {
-                if (stream == null || ((stream.getUserId() == null || stream.getUserName() == null ||
-                        stream.getUserName().getLogin() == null) && stream.isOnline()))
-                    continue;
-                if (stream.getUserId() != null && stream.getUserId().equals("168843586") && stream.getTitle() != null
-                        && stream.getTitle().toUpperCase().contains("NFL")) {
-                    stream.setOnline(false);
-                    stream.setTitle("DRM Stream | " + stream.getTitle());
-                    stream.setType("DRM Stream");
-                }
-                String json = gson.toJson(stream);
-                String id = String.format("%s%s", STREAM_PREFIX, stream.getUserId());
-                redis.setex(id, TIMEOUT, json);
+        Map<String, byte[]> values = new HashMap<>();
+        Map<String, byte[]> tombstones = new HashMap<>();
+        for (Stream stream : streams) {
+            if (stream == null || ((stream.getUserId() == null || stream.getUserName() == null ||
+                    stream.getUserName().getLogin() == null) && stream.isOnline()))
+                continue;
+            if (stream.getUserId() != null && stream.getUserId().equals("168843586") && stream.getTitle() != null
+                    && stream.getTitle().toUpperCase().contains("NFL")) {
+                stream.setOnline(false);
+                stream.setTitle("DRM Stream | " + stream.getTitle());
+                stream.setType("DRM Stream");
             }
+            // Offline streams are only used to know the id does not need to be requested
+            if (!stream.isOnline()) {
+                if (stream.getUserId() != null && !stream.getUserId().isEmpty())
+                    tombstones.put(stream.getUserId(), CacheCodec.encodeTombstone());
+                continue;
+            }
+            values.put(String.valueOf(stream.getUserId()), streamCodec.encode(stream));
         }
-        catch (Exception e) {
-            Logger.exception(e);
-        }
+        setMultipleBinary(STREAM_PREFIX, values, TIMEOUT);
+        streamStats.tombstones.addAndGet(tombstones.size());
+        setMultipleBinary(STREAM_PREFIX, tombstones, streamTombstoneTimeout);
     }
 
     /**
@@ -454,31 +1074,37 @@ public class ApiCache {
     @NotNull
     public CachedStreams getStreams(@NotNull List<String> userIds) {
         CachedStreams cachedStreams = new CachedStreams();
-        List<Stream> offlineStreams = new ArrayList<>();
+        Set<String> requestedIds = new HashSet<>(userIds);
+        IndexedStreams foundStreams = new IndexedStreams();
+        Set<String> offlineIds = new HashSet<>();
         // Find matching streams
-        Map<String, String> streams = mgetWithPrefix(STREAM_PREFIX, userIds);
-        for (Map.Entry<String, String> streamEntry : streams.entrySet()) {
-            try {
-                Stream stream = gson.fromJson(streamEntry.getValue(), Stream.class);
-                if (stream != null && !stream.isOnline()) {
-                    offlineStreams.add(stream);
-                    continue;
-                }
-                if (stream == null || stream.getUserId() == null || stream.getUserName() == null ||
-                        stream.getUserName().getLogin() == null ||
-                        stream.getUserName().getLogin().isEmpty())
-                    continue;
-                if (userIds.contains(stream.getUserId()))
-                    cachedStreams.getStreams().add(stream);
+        Map<String, byte[]> streams = mgetBinaryWithPrefix(STREAM_PREFIX, userIds, TIMEOUT);
+        for (Map.Entry<String, byte[]> streamEntry : streams.entrySet()) {
+            streamStats.lookups.incrementAndGet();
+            if (CacheCodec.isTombstone(streamEntry.getValue())) {
+                streamStats.negativeHits.incrementAndGet();
+                offlineIds.add(streamEntry.getKey().substring(STREAM_PREFIX.length()));
+                continue;
             }
-            catch (JsonSyntaxException e) {
-                Logger.exception(e);
+            Stream stream = streamCodec.decode(streamEntry.getValue());
+            if (stream != null && !stream.isOnline()) {
+                streamStats.negativeHits.incrementAndGet();
+                foundStreams.add(stream);
+                continue;
+            }
+            if (stream == null || stream.getUserId() == null || stream.getUserName() == null ||
+                    stream.getUserName().getLogin() == null ||
+                    stream.getUserName().getLogin().isEmpty())
+                continue;
+            if (requestedIds.contains(stream.getUserId())) {
+                streamStats.hits.incrementAndGet();
+                cachedStreams.getStreams().add(stream);
+                foundStreams.add(stream);
             }
         }
         // Populate missing lists
         for (String id : userIds)
-            if (!StreamUtil.streamListContainsId(cachedStreams.getStreams(), id) &&
-                    !StreamUtil.streamListContainsId(offlineStreams, id))
+            if (!foundStreams.containsId(id) && !offlineIds.contains(id))
                 cachedStreams.getMissingIds().add(id);
         return cachedStreams;
     }
@@ -490,12 +1116,14 @@ public class ApiCache {
      */
     public void cacheUserIdFromToken(String id, String token) {
         String tokenHash = AuthUtil.hashString(token, null);
-        try (Jedis redis = getAuthenticatedJedis()) {
+        try (Jedis redis = getJedis(TOKEN_ID_PREFIX + tokenHash)) {
             redis.setex(TOKEN_ID_PREFIX + tokenHash, TIMEOUT_DAY, id);
         }
         catch (Exception e) {
             Logger.exception(e);
+            return;
         }
+        invalidate(Collections.singletonList(TOKEN_ID_PREFIX + tokenHash));
     }
 
     /**
@@ -515,12 +1143,13 @@ public class ApiCache {
      * @return map with values as nulls if not found
      */
     public Map<String, String> getUserIds(List<String> logins) {
-        Map<String, String> cachedIds = mgetWithPrefix(USER_ID_PREFIX, logins);
+        Map<String, byte[]> cachedIds = mgetBinaryWithPrefix(USER_ID_PREFIX, logins, TIMEOUT_DAY);
         Map<String, String> retIds = new HashMap<>();
         for (String login : logins) {
             if (login == null || login.isEmpty())
                 continue;
-            retIds.put(login, cachedIds.getOrDefault(USER_ID_PREFIX + login, null));
+            byte[] id = cachedIds.get(USER_ID_PREFIX + login);
+            retIds.put(login, id == null ? null : SafeEncoder.encode(id));
         }
         return retIds;
     }
@@ -530,18 +1159,14 @@ public class ApiCache {
      * @param loginsIds map of logins and ids
      */
     public void setUserIds(Map<String, String> loginsIds) {
-        try (Jedis redis = getAuthenticatedJedis()) {
-            for (Map.Entry<String, String> loginId : loginsIds.entrySet()) {
-                if (loginId.getKey() == null || loginId.getKey().isEmpty() || loginId.getValue() == null ||
-                        loginId.getValue().isEmpty())
-                    continue;
-                String key = USER_ID_PREFIX + loginId.getKey();
-                redis.setex(key, TIMEOUT_DAY, loginId.getValue());
-            }
-        }
-        catch (Exception e) {
-            Logger.exception(e);
+        Map<String, byte[]> values = new HashMap<>();
+        for (Map.Entry<String, String> loginId : loginsIds.entrySet()) {
+            if (loginId.getKey() == null || loginId.getKey().isEmpty() || loginId.getValue() == null ||
+                    loginId.getValue().isEmpty())
+                continue;
+            values.put(loginId.getKey(), SafeEncoder.encode(loginId.getValue()));
         }
+        setMultipleBinary(USER_ID_PREFIX, values, TIMEOUT_DAY);
     }
 
     /**
@@ -551,7 +1176,7 @@ public class ApiCache {
      */
     public List<String> getFollowedGames(String userName) {
         List<String> followsList = new ArrayList<>();
-        try (Jedis redis = getAuthenticatedJedis()) {
+        try (Jedis redis = getJedis(FOLLOW_GAME_PREFIX + userName)) {
             Set<String> follows = redis.smembers(FOLLOW_GAME_PREFIX + userName);
             followsList.addAll(follows);
         }
@@ -567,21 +1192,13 @@ public class ApiCache {
      * @param followedGameIds followed game ids
      */
     void setFollowedGames(String userName, List<String> followedGameIds) {
-        // Remove old follows
-        List<String> follows = getFollowedGames(userName);
-        try (Jedis redis = getAuthenticatedJedis()) {
-            if (follows.size() > 0)
-                redis.srem(FOLLOW_GAME_PREFIX + userName, follows.toArray(new String[0]));
-        }
-        catch (Exception e) {
-            Logger.exception(e);
-        }
-        // Set follows
         setFollowInSet(userName, followedGameIds, FOLLOW_GAME_PREFIX, FollowQueue.FollowType.GAME);
     }
 
     /**
-     * Set follows id in a set
+     * Replace the follows ids in a set
+     * The set is diffed against the new ids and only changed members are added or removed. This is done in one
+     * script, so readers never see a partially written set. The time key is stored on the shard of the set.
      * @param id set id
      * @param toIds ids to set the set to
      * @param prefix set prefix
@@ -596,15 +1213,92 @@ public class ApiCache {
                 timePrefix = FOLLOW_TIME_GAME_PREFIX;
                 break;
         }
-        try (Jedis redis = getAuthenticatedJedis()) {
-            if (toIds.size() > 0) {
-                redis.sadd(prefix + id, toIds.toArray(new String[0]));
-                redis.expire(prefix + id, TIMEOUT_DAY);
-            }
-            redis.setex(timePrefix + id, TIMEOUT_HOUR, String.valueOf(System.currentTimeMillis()));
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(TIMEOUT_DAY));
+        args.add(String.valueOf(TIMEOUT_HOUR));
+        args.add(String.valueOf(System.currentTimeMillis()));
+        for (String toId : toIds)
+            if (toId != null)
+                args.add(toId);
+        try (Jedis redis = getJedis(prefix + id)) {
+            REPLACE_SET_SCRIPT.eval(redis, Arrays.asList(prefix + id, timePrefix + id), args);
         }
         catch (Exception e) {
             Logger.exception(e);
         }
     }
+
+    /**
+     * Store the live stream index
+     * The time key is stored on the shard of the index.
+     * @param index encoded index
+     * @param updated epoch milliseconds the index was created at
+     * @param timeout expire time in seconds
+     */
+    void setLiveIndex(byte[] index, long updated, int timeout) {
+        try (Jedis redis = getJedis(LIVE_INDEX_KEY)) {
+            Pipeline pipeline = redis.pipelined();
+            pipeline.setex(SafeEncoder.encode(LIVE_INDEX_KEY), timeout, index);
+            pipeline.setex(LIVE_INDEX_TIME_KEY, timeout, String.valueOf(updated));
+            pipeline.sync();
+        }
+        catch (Exception e) {
+            Logger.exception(e);
+        }
+    }
+
+    /**
+     * Get the time the stored live stream index was created at
+     * @return epoch milliseconds or 0 if there is no index
+     */
+    long getLiveIndexTime() {
+        try (Jedis redis = getJedis(LIVE_INDEX_KEY)) {
+            return StringUtil.parseLong(redis.get(LIVE_INDEX_TIME_KEY));
+        }
+        catch (Exception e) {
+            Logger.exception(e);
+        }
+        return 0;
+    }
+
+    /**
+     * Get the stored live stream index
+     * @return encoded index or null if there is no index
+     */
+    @Nullable
+    byte[] getLiveIndex() {
+        try (Jedis redis = getJedis(LIVE_INDEX_KEY)) {
+            return redis.get(SafeEncoder.encode(LIVE_INDEX_KEY));
+        }
+        catch (Exception e) {
+            Logger.exception(e);
+        }
+        return null;
+    }
+
+    /**
+     * Lookup counters of a model type that is cached as missing with tombstones
+     */
+    private static class ModelCacheStats {
+        private final AtomicLong lookups = new AtomicLong();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong negativeHits = new AtomicLong();
+        private final AtomicLong tombstones = new AtomicLong();
+
+        /**
+         * Get counters and the share of lookups answered by a tombstone
+         * @return stats json
+         */
+        private JsonObject toJson() {
+            JsonObject stats = new JsonObject();
+            long lookupCount = lookups.get();
+            long negativeHitCount = negativeHits.get();
+            stats.addProperty("lookups", lookupCount);
+            stats.addProperty("hits", hits.get());
+            stats.addProperty("negative_hits", negativeHitCount);
+            stats.addProperty("negative_hit_ratio", lookupCount == 0 ? 0 : (double) negativeHitCount / lookupCount);
+            stats.addProperty("tombstones_written", tombstones.get());
+            return stats;
+        }
+    }
 }
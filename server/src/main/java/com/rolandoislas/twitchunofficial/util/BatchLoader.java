@@ -0,0 +1,274 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Resolves models by id, batching the ids of concurrent requests into shared API calls
+ * Resolved models are kept decoded in an in-process cache, then looked up in the shared cache. Ids missing from both
+ * are queued for a short window. When the window ends or a full batch is queued, the queued ids of all requests are
+ * fetched in batches of up to the batch size. Ids already queued or being fetched are joined instead of queued again.
+ * Batches are sent without blocking, so a batch waiting on the API does not hold one of the loader's threads.
+ * Models returned by the loader are shared between requests and must not be modified.
+ */
+public class BatchLoader<V> {
+    private final String name;
+    private final Function<List<String>, Map<String, @Nullable V>> cacheLoader;
+    private final BiFunction<List<String>, Executor, CompletableFuture<@Nullable Map<String, V>>> batchLoader;
+    private final int batchSize;
+    private final long window;
+    private final NearCache<V> nearCache;
+    private final ScheduledExecutorService executor;
+    private final Map<String, CompletableFuture<V>> pending = new ConcurrentHashMap<>();
+    private final Object queueLock = new Object();
+    private List<String> queue = new ArrayList<>();
+    private boolean dispatchScheduled = false;
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedIds = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * @param name name of the models used for thread names and stats
+     * @param cacheLoader gets models from the shared cache - missing models are null
+     * @param batchLoader requests models from the API and caches them - completed with null if the request failed.
+     *                    Every requested id should be in the map, with a placeholder for ids that do not exist. Work
+     *                    after the response arrives, like caching, should run on the given executor.
+     * @param batchSize max ids per API request
+     * @param window milliseconds ids are collected before a batch that is not full is sent
+     * @param threads amount of threads sending batches and handling their responses
+     * @param nearCacheSize max models kept in process
+     * @param nearCacheTimeout milliseconds models are kept in process
+     */
+    public BatchLoader(String name, Function<List<String>, Map<String, @Nullable V>> cacheLoader,
+                       BiFunction<List<String>, Executor, CompletableFuture<@Nullable Map<String, V>>> batchLoader,
+                       int batchSize, long window, int threads, int nearCacheSize, long nearCacheTimeout) {
+        this.name = name;
+        this.cacheLoader = cacheLoader;
+        this.batchLoader = batchLoader;
+        this.batchSize = Math.max(1, batchSize);
+        this.window = Math.max(0, window);
+        this.nearCache = new NearCache<>(nearCacheSize, nearCacheTimeout);
+        this.executor = Executors.newScheduledThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName(String.format("Batch Loader Thread (%s)", name));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get cached models without requesting missing models
+     * @param ids model ids
+     * @return map with ids as keys and models as values - models not in cache will be null
+     */
+    public Map<String, @Nullable V> getCached(List<String> ids) {
+        requested.addAndGet(ids.size());
+        Map<String, @Nullable V> models = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String id : ids) {
+            if (id == null)
+                continue;
+            V model = nearCache.get(id);
+            models.put(id, model);
+            if (model == null)
+                missingIds.add(id);
+        }
+        if (missingIds.isEmpty())
+            return models;
+        for (Map.Entry<String, @Nullable V> cachedModel : cacheLoader.apply(missingIds).entrySet()) {
+            if (cachedModel.getValue() == null)
+                continue;
+            cacheHits.incrementAndGet();
+            nearCache.put(cachedModel.getKey(), cachedModel.getValue());
+            models.put(cachedModel.getKey(), cachedModel.getValue());
+        }
+        return models;
+    }
+
+    /**
+     * Get models, requesting the ones missing from the cache with the batches of other requests
+     * @param ids model ids
+     * @param timeout max milliseconds to wait for requested models
+     * @return map with ids as keys and models as values - ids that could not be resolved are not in the map
+     */
+    public Map<String, V> load(List<String> ids, long timeout) {
+        Map<String, @Nullable V> models = getCached(ids);
+        Map<String, CompletableFuture<V>> futures = new HashMap<>();
+        for (Map.Entry<String, @Nullable V> model : models.entrySet())
+            if (model.getValue() == null)
+                futures.put(model.getKey(), enqueue(model.getKey()));
+        long end = System.currentTimeMillis() + timeout;
+        for (Map.Entry<String, CompletableFuture<V>> future : futures.entrySet()) {
+            try {
+                V model = future.getValue().get(Math.max(0, end - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+                models.put(future.getKey(), model);
+            }
+            catch (TimeoutException e) {
+                timeouts.incrementAndGet();
+                models.remove(future.getKey());
+            }
+            catch (InterruptedException e) {
+                Logger.exception(e);
+                Thread.currentThread().interrupt();
+                models.remove(future.getKey());
+            }
+            catch (ExecutionException e) {
+                models.remove(future.getKey());
+            }
+        }
+        models.values().removeIf(model -> model == null);
+        return models;
+    }
+
+    /**
+     * Queue an id or join the request already pending for it
+     * @param id model id
+     * @return future completed with the model or exceptionally if the request failed
+     */
+    private CompletableFuture<V> enqueue(String id) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = pending.putIfAbsent(id, future);
+        if (existing != null) {
+            joined.incrementAndGet();
+            return existing;
+        }
+        List<String> fullBatch = null;
+        boolean scheduleDispatch = false;
+        synchronized (queueLock) {
+            queue.add(id);
+            if (queue.size() >= batchSize) {
+                fullBatch = queue;
+                queue = new ArrayList<>();
+            }
+            else if (!dispatchScheduled) {
+                dispatchScheduled = true;
+                scheduleDispatch = true;
+            }
+        }
+        if (fullBatch != null) {
+            List<String> batch = fullBatch;
+            schedule(() -> fetch(batch), 0);
+        }
+        if (scheduleDispatch)
+            schedule(this::dispatchQueue, window);
+        return future;
+    }
+
+    /**
+     * Run a task on the executor or on the calling thread if it is rejected
+     * @param task task
+     * @param delay milliseconds to wait before running
+     */
+    private void schedule(Runnable task, long delay) {
+        try {
+            executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            Logger.exception(e);
+            task.run();
+        }
+    }
+
+    /**
+     * Send the ids queued during the window
+     */
+    private void dispatchQueue() {
+        List<String> ids;
+        synchronized (queueLock) {
+            ids = queue;
+            queue = new ArrayList<>();
+            dispatchScheduled = false;
+        }
+        for (int idIndex = 0; idIndex < ids.size(); idIndex += batchSize)
+            fetch(ids.subList(idIndex, Math.min(idIndex + batchSize, ids.size())));
+    }
+
+    /**
+     * Request a batch of models and complete the futures waiting on them when the response is handled
+     * @param ids ids - at most the batch size
+     */
+    private void fetch(List<String> ids) {
+        if (ids.isEmpty())
+            return;
+        batches.incrementAndGet();
+        batchedIds.addAndGet(ids.size());
+        CompletableFuture<@Nullable Map<String, V>> models;
+        try {
+            models = batchLoader.apply(ids, executor);
+        }
+        // Catch all errors. Waiting requests must be completed.
+        catch (Exception e) {
+            Logger.exception(e);
+            models = CompletableFuture.completedFuture(null);
+        }
+        models.whenComplete((loaded, error) -> {
+            if (error != null)
+                Logger.exception(error instanceof Exception ? (Exception) error : new Exception(error));
+            complete(ids, error == null ? loaded : null);
+        });
+    }
+
+    /**
+     * Complete the futures waiting on a batch
+     * @param ids ids of the batch
+     * @param models models returned by the batch loader - null if the request failed
+     */
+    private void complete(List<String> ids, @Nullable Map<String, V> models) {
+        if (models == null)
+            failures.incrementAndGet();
+        for (String id : ids) {
+            CompletableFuture<V> future = pending.remove(id);
+            if (future == null)
+                continue;
+            V model = models != null ? models.get(id) : null;
+            if (model == null) {
+                future.completeExceptionally(new IllegalStateException(
+                        String.format("Failed to load %s %s", name, id)));
+                continue;
+            }
+            nearCache.put(id, model);
+            future.complete(model);
+        }
+    }
+
+    /**
+     * Get batching counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("requested", requested.get());
+        stats.addProperty("near_size", nearCache.size());
+        stats.addProperty("near_hits", nearCache.getHits());
+        stats.addProperty("cache_hits", cacheHits.get());
+        stats.addProperty("pending", pending.size());
+        stats.addProperty("joined", joined.get());
+        stats.addProperty("batches", batches.get());
+        stats.addProperty("batched_ids", batchedIds.get());
+        stats.addProperty("failures", failures.get());
+        stats.addProperty("timeouts", timeouts.get());
+        return stats;
+    }
+}
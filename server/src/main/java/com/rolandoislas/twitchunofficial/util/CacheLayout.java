@@ -0,0 +1,51 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage layout for values cached per id (streams, users, games, user ids)
+ */
+interface CacheLayout {
+    /**
+     * Get values
+     * @param redis connection
+     * @param keyPrefix type prefix
+     * @param ids ids to get
+     * @param timeout expire time in seconds values of this type are written with
+     * @param timesToLive filled with the remaining time to live in milliseconds of each found value, as returned by
+     *                    PTTL - null to not read it
+     * @return map with ids as keys and possibly null values if the id is not cached
+     */
+    Map<String, byte[]> get(Jedis redis, String keyPrefix, List<String> ids, int timeout,
+                            @Nullable Map<String, Long> timesToLive);
+
+    /**
+     * Set values
+     * @param redis connection
+     * @param keyPrefix type prefix
+     * @param values id (key) - value (value)
+     * @param timeout expire time in seconds
+     */
+    void set(Jedis redis, String keyPrefix, Map<String, byte[]> values, int timeout);
+
+    /**
+     * Set values for ids that are not cached
+     * @param redis connection
+     * @param keyPrefix type prefix
+     * @param values id (key) - value (value)
+     * @param timeout expire time in seconds
+     * @return ids that were set
+     */
+    List<String> setIfAbsent(Jedis redis, String keyPrefix, Map<String, byte[]> values, int timeout);
+
+    /**
+     * Get layout name and counters
+     * @return stats json
+     */
+    JsonObject getStats();
+}
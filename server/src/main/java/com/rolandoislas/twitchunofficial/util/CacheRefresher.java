@@ -0,0 +1,109 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Refreshes stale cache entries in the background
+ * The amount of refresh threads and queued refreshes is bounded. A key is only queued once at a time and only one
+ * node refreshes a key at a time.
+ */
+public class CacheRefresher {
+    private static final long LOCK_TIMEOUT = 30 * 1000;
+    private final ApiCache cache;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param cache cache used to lock keys across nodes
+     * @param threads amount of threads refreshing at the same time
+     * @param queueSize max amount of refreshes waiting for a thread. Refreshes past this are dropped.
+     */
+    public CacheRefresher(ApiCache cache, int threads, int queueSize) {
+        this.cache = cache;
+        threads = Math.max(1, threads);
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("Cache Refresh Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a refresh
+     * @param key cache key being refreshed
+     * @param task task that loads and caches the value
+     */
+    public void refresh(String key, Runnable task) {
+        if (!queued.add(key)) {
+            deduplicated.incrementAndGet();
+            return;
+        }
+        try {
+            executor.execute(() -> run(key, task));
+        }
+        catch (RejectedExecutionException e) {
+            queued.remove(key);
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Run a refresh if no other node is refreshing the key
+     * @param key cache key
+     * @param task refresh task
+     */
+    private void run(String key, Runnable task) {
+        String owner = UUID.randomUUID().toString();
+        String lockKey = ApiCache.createKey("refresh", key);
+        try {
+            if (!cache.tryLock(lockKey, owner, LOCK_TIMEOUT)) {
+                deduplicated.incrementAndGet();
+                return;
+            }
+            try {
+                task.run();
+                refreshed.incrementAndGet();
+            }
+            catch (RuntimeException e) {
+                failed.incrementAndGet();
+                Logger.debug("Failed to refresh cache key: %s", key);
+            }
+            finally {
+                cache.unlock(lockKey, owner);
+            }
+        }
+        finally {
+            queued.remove(key);
+        }
+    }
+
+    /**
+     * Get refresh counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("queued", executor.getQueue().size());
+        stats.addProperty("active", executor.getActiveCount());
+        stats.addProperty("refreshed", refreshed.get());
+        stats.addProperty("failed", failed.get());
+        stats.addProperty("deduplicated", deduplicated.get());
+        stats.addProperty("rejected", rejected.get());
+        return stats;
+    }
+}
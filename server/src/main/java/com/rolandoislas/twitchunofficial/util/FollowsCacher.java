@@ -1,7 +1,5 @@
 package com.rolandoislas.twitchunofficial.util;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.rolandoislas.twitchunofficial.TwitchUnofficialApi;
 import com.rolandoislas.twitchunofficial.data.model.FollowQueue;
 import com.rolandoislas.twitchunofficial.data.model.FollowedGamesWithRate;
@@ -26,11 +24,19 @@ import static com.rolandoislas.twitchunofficial.TwitchUnofficial.cache;
  * Checks for any id that need to have their follows cached and polls the api and caches them.
  */
 public class FollowsCacher implements Runnable {
+    private static final long RATE_LIMIT_WAIT = 60 * 1000;
     @SuppressWarnings("FieldCanBeLocal")
     private boolean running = false;
-    private Gson gson = new Gson();
     private List<String> queuedStreamIds = new ArrayList<>();
     private List<String> queuedStreamLogins = new ArrayList<>();
+    private final RateLimitGovernor rateLimitGovernor;
+
+    /**
+     * @param rateLimitGovernor governor requests to the Twitch API wait for
+     */
+    public FollowsCacher(RateLimitGovernor rateLimitGovernor) {
+        this.rateLimitGovernor = rateLimitGovernor;
+    }
 
     @Override
     public void run() {
@@ -105,7 +111,8 @@ public class FollowsCacher implements Runnable {
      * @param ids stream ids
      * @param logins stream logins
      */
-    private void cacheStreamStatus(List<String> ids, List<String> logins) {
+    private void cacheStreamStatus(List<String> ids, List<String> logins) throws InterruptedException {
+        awaitRateLimit();
         Logger.debug("FollowCacher: Requesting status for streams");
         TwitchUnofficialApi.getStreams(null, null, null, "100", null,
                 null, null, ids, logins, null, true);
@@ -130,11 +137,6 @@ public class FollowsCacher implements Runnable {
             followedGames.addAll(followedGameSublist);
             offset++;
             Thread.sleep(1000);
-            // Rate limit is low
-            if (followedGamesWithRate.getRateRemaining() < TwitchUnofficialApi.RATE_LIMIT_MAX / 4) {
-                Logger.debug("FollowsCacher: Rate limit is low. Halting for 10 seconds");
-                Thread.sleep(10000);
-            }
         }
         while (hasNext);
         // Cache followed games
@@ -144,24 +146,11 @@ public class FollowsCacher implements Runnable {
                 followedIds.add(game.getId());
         cache.setFollowedGames(fromUserName, followedIds);
         // Cache games
-        Map<String, String> gamesJson = new HashMap<>();
-        for (Game game : followedGames) {
-            if (game.getId() == null)
-                continue;
-            try {
-                gamesJson.put(game.getId(), gson.toJson(game));
-            }
-            catch (JsonSyntaxException e) {
-                Logger.exception(e);
-                try {
-                    gamesJson.put(game.getId(), gson.toJson(new Game()));
-                }
-                catch (JsonSyntaxException ee) {
-                    Logger.exception(ee);
-                }
-            }
-        }
-        cache.setGamesJson(gamesJson);
+        Map<String, Game> games = new HashMap<>();
+        for (Game game : followedGames)
+            if (game.getId() != null)
+                games.put(game.getId(), game);
+        cache.setGames(games);
     }
 
     /**
@@ -175,6 +164,7 @@ public class FollowsCacher implements Runnable {
         String pagination = null;
         int followAmount = 0;
         do {
+            awaitRateLimit();
             FollowList userFollows = TwitchUnofficialApi.getUserFollows(pagination,
                     null, "100", fromId, null, false);
             if (userFollows != null && userFollows.getFollows() != null) {
@@ -183,11 +173,6 @@ public class FollowsCacher implements Runnable {
                 for (Follow follow : userFollows.getFollows())
                     if (follow.getToId() != null)
                         followIds.add(follow.getToId());
-                // Rate limit is low
-                if (userFollows.getRateLimitRemaining() < TwitchUnofficialApi.RATE_LIMIT_MAX / 4) {
-                    Logger.debug("FollowsCacher: Rate limit is low. Halting for 60 seconds");
-                    Thread.sleep(60000);
-                }
             }
             else
                 pagination = null;
@@ -207,9 +192,9 @@ public class FollowsCacher implements Runnable {
      */
     private void cacheUsers(List<String> ids) throws InterruptedException {
         // Find non-cached users
-        Map<String, String> users = cache.getUserNames(ids);
+        Map<String, User> users = cache.getUsers(ids);
         List<String> missingFromCache = new ArrayList<>();
-        for (Map.Entry<String, String> userEntry : users.entrySet()) {
+        for (Map.Entry<String, User> userEntry : users.entrySet()) {
             if (userEntry.getValue() == null && userEntry.getKey() != null &&
                     !missingFromCache.contains(userEntry.getKey())) {
                 missingFromCache.add(userEntry.getKey());
@@ -220,27 +205,28 @@ public class FollowsCacher implements Runnable {
         for (int idIndex = 0; idIndex < missingFromCache.size(); idIndex += 100) {
             List<String> fetchIds = missingFromCache.subList(idIndex, Math.min(idIndex, missingFromCache.size()));
             if (fetchIds.size() > 0) {
+                awaitRateLimit();
                 UsersWithRate usersWithRate = TwitchUnofficialApi.getUsersWithRate(fetchIds,
                         null, null, null, null);
                 if (usersWithRate.getUsers() == null)
                     return;
                 List<User> fetchedUsers = usersWithRate.getUsers();
-                Map<String, String> userIdMap = new HashMap<>();
-                for (User fetchedUser : fetchedUsers) {
-                    try {
-                        String userString = gson.toJson(fetchedUser);
-                        userIdMap.put(fetchedUser.getId(), userString);
-                    } catch (JsonSyntaxException e) {
-                        Logger.exception(e);
-                    }
-                }
-                cache.setUsersJson(userIdMap);
-                if (usersWithRate.getRateLimit() < TwitchUnofficialApi.RATE_LIMIT_MAX / 4) {
-                    Logger.debug("FollowsCacher: Rate limit is low. Halting for 10 seconds");
-                    Thread.sleep(10000);
-                }
+                Map<String, User> userIdMap = new HashMap<>();
+                for (User fetchedUser : fetchedUsers)
+                    userIdMap.put(fetchedUser.getId(), fetchedUser);
+                cache.setUsers(userIdMap);
                 Thread.sleep(2000);
             }
         }
     }
+
+    /**
+     * Wait until the rate limit governor has capacity for background requests
+     * Interactive requests are admitted before background requests when the rate limit is low. The requests take their
+     * own tokens when they are sent.
+     */
+    private void awaitRateLimit() throws InterruptedException {
+        while (!rateLimitGovernor.awaitCapacity(RateLimitGovernor.Priority.BACKGROUND, RATE_LIMIT_WAIT))
+            Logger.debug("FollowsCacher: Rate limit is low. Waiting for the rate limit to reset");
+    }
 }
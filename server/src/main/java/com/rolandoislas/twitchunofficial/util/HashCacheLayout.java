@@ -0,0 +1,343 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores ids as fields of a fixed amount of hash buckets per type
+ * Redis can not expire hash fields, so every field value starts with its expire time in epoch milliseconds followed by
+ * a colon. Expired fields are treated as missing and removed when they are read. Each write also scans a few more
+ * fields of the bucket, continuing from where the last scan of the bucket stopped, and removes the expired ones, so
+ * fields that are never read again do not pile up. Writes only ever extend the expire time of a bucket, so a short
+ * lived value does not shorten the life of the values already in it.
+ * Ids not found in a bucket are read from their top level key (the keys layout) and copied into the bucket with the
+ * remaining time to live of the key.
+ */
+class HashCacheLayout implements CacheLayout {
+    private static final String BUCKET_PREFIX = "_h";
+    private static final byte SEPARATOR = ':';
+    private static final RedisScript SET_IF_ABSENT_SCRIPT = new RedisScript(
+            "local written = {}\n" +
+            "local now = tonumber(ARGV[1])\n" +
+            "for i, key in ipairs(KEYS) do\n" +
+            "    local field = ARGV[i * 2 + 1]\n" +
+            "    local current = redis.call('HGET', key, field)\n" +
+            "    local expired = true\n" +
+            "    if current then\n" +
+            "        local separator = string.find(current, ':', 1, true)\n" +
+            "        if separator then\n" +
+            "            local expire = tonumber(string.sub(current, 1, separator - 1))\n" +
+            "            expired = expire == nil or expire <= now\n" +
+            "        end\n" +
+            "    end\n" +
+            "    if expired then\n" +
+            "        redis.call('HSET', key, field, ARGV[i * 2 + 2])\n" +
+            "        if redis.call('PTTL', key) < tonumber(ARGV[2]) then\n" +
+            "            redis.call('PEXPIRE', key, ARGV[2])\n" +
+            "        end\n" +
+            "        written[#written + 1] = field\n" +
+            "    end\n" +
+            "end\n" +
+            "return written");
+    /**
+     * ARGV: now, time to live in milliseconds, fields to sweep, then for each key its scan cursor, its field count,
+     * and its field value pairs
+     * Returns the next scan cursor of each key followed by the amount of expired fields removed
+     */
+    private static final RedisScript SET_SCRIPT = new RedisScript(
+            "redis.replicate_commands()\n" +
+            "local now = tonumber(ARGV[1])\n" +
+            "local ttl = tonumber(ARGV[2])\n" +
+            "local sweep = tonumber(ARGV[3])\n" +
+            "local result = {}\n" +
+            "local removed = 0\n" +
+            "local arg = 4\n" +
+            "for i, key in ipairs(KEYS) do\n" +
+            "    local cursor = ARGV[arg]\n" +
+            "    local count = tonumber(ARGV[arg + 1])\n" +
+            "    arg = arg + 2\n" +
+            "    if sweep > 0 then\n" +
+            "        local scan = redis.call('HSCAN', key, cursor, 'COUNT', sweep)\n" +
+            "        cursor = scan[1]\n" +
+            "        local entries = scan[2]\n" +
+            "        for entry = 1, #entries, 2 do\n" +
+            "            local value = entries[entry + 1]\n" +
+            "            local separator = string.find(value, ':', 1, true)\n" +
+            "            local expire = separator and tonumber(string.sub(value, 1, separator - 1))\n" +
+            "            if expire == nil or expire <= now then\n" +
+            "                redis.call('HDEL', key, entries[entry])\n" +
+            "                removed = removed + 1\n" +
+            "            end\n" +
+            "        end\n" +
+            "    end\n" +
+            "    for field = 0, count - 1 do\n" +
+            "        redis.call('HSET', key, ARGV[arg + field * 2], ARGV[arg + field * 2 + 1])\n" +
+            "    end\n" +
+            "    arg = arg + count * 2\n" +
+            "    if redis.call('PTTL', key) < ttl then\n" +
+            "        redis.call('PEXPIRE', key, ttl)\n" +
+            "    end\n" +
+            "    result[#result + 1] = cursor\n" +
+            "end\n" +
+            "result[#result + 1] = removed\n" +
+            "return result");
+    private final int buckets;
+    private final int sweepFields;
+    private final Map<String, String> sweepCursors = new ConcurrentHashMap<>();
+    private final AtomicLong fallbackHits = new AtomicLong();
+    private final AtomicLong expiredFields = new AtomicLong();
+    private final AtomicLong sweptFields = new AtomicLong();
+
+    /**
+     * @param buckets amount of hashes ids of a type are spread over
+     * @param sweepFields amount of fields scanned for expired fields each time a bucket is written - 0 disables
+     */
+    HashCacheLayout(int buckets, int sweepFields) {
+        this.buckets = Math.max(1, buckets);
+        this.sweepFields = Math.max(0, sweepFields);
+    }
+
+    /**
+     * Get the bucket key an id is stored in
+     * @param keyPrefix type prefix
+     * @param id id
+     * @return bucket key
+     */
+    private String getBucket(String keyPrefix, String id) {
+        return BUCKET_PREFIX + keyPrefix + Math.floorMod(id.hashCode(), buckets);
+    }
+
+    /**
+     * Prepend the expire time to a value
+     * @param value value
+     * @param expire epoch milliseconds the value expires at
+     * @return field value
+     */
+    private static byte[] encodeField(byte[] value, long expire) {
+        byte[] header = SafeEncoder.encode(expire + ":");
+        byte[] field = Arrays.copyOf(header, header.length + value.length);
+        System.arraycopy(value, 0, field, header.length, value.length);
+        return field;
+    }
+
+    /**
+     * Strip the expire time from a field value
+     * @param field field value
+     * @param now current epoch milliseconds
+     * @return value or null if the field is null, malformed, or expired
+     */
+    @Nullable
+    private static byte[] decodeField(@Nullable byte[] field, long now) {
+        if (field == null)
+            return null;
+        long expire = decodeExpire(field);
+        for (int byteIndex = 0; byteIndex < field.length; byteIndex++)
+            if (field[byteIndex] == SEPARATOR)
+                return expire > now ? Arrays.copyOfRange(field, byteIndex + 1, field.length) : null;
+        return null;
+    }
+
+    /**
+     * Read the expire time of a field value
+     * @param field field value
+     * @return epoch milliseconds the value expires at - 0 if the field is malformed
+     */
+    private static long decodeExpire(byte[] field) {
+        long expire = 0;
+        for (int byteIndex = 0; byteIndex < field.length; byteIndex++) {
+            if (field[byteIndex] == SEPARATOR)
+                return expire;
+            if (field[byteIndex] < '0' || field[byteIndex] > '9')
+                return 0;
+            expire = expire * 10 + (field[byteIndex] - '0');
+        }
+        return 0;
+    }
+
+    /**
+     * Group ids by the bucket they are stored in
+     * @param keyPrefix type prefix
+     * @param ids ids
+     * @return bucket key (key) - ids (value)
+     */
+    private Map<String, List<String>> groupByBucket(String keyPrefix, Iterable<String> ids) {
+        Map<String, List<String>> bucketIds = new HashMap<>();
+        for (String id : ids)
+            bucketIds.computeIfAbsent(getBucket(keyPrefix, id), bucket -> new ArrayList<>()).add(id);
+        return bucketIds;
+    }
+
+    @Override
+    public Map<String, byte[]> get(Jedis redis, String keyPrefix, List<String> ids, int timeout,
+                                   @Nullable Map<String, Long> timesToLive) {
+        Map<String, byte[]> map = new HashMap<>();
+        if (ids.isEmpty())
+            return map;
+        long now = System.currentTimeMillis();
+        // Read buckets
+        Map<String, List<String>> bucketIds = groupByBucket(keyPrefix, ids);
+        Map<String, Response<List<byte[]>>> responses = new HashMap<>();
+        Pipeline pipeline = redis.pipelined();
+        for (Map.Entry<String, List<String>> bucket : bucketIds.entrySet()) {
+            byte[][] fields = new byte[bucket.getValue().size()][];
+            for (int idIndex = 0; idIndex < fields.length; idIndex++)
+                fields[idIndex] = SafeEncoder.encode(bucket.getValue().get(idIndex));
+            responses.put(bucket.getKey(), pipeline.hmget(SafeEncoder.encode(bucket.getKey()), fields));
+        }
+        pipeline.sync();
+        List<String> missingIds = new ArrayList<>();
+        Map<String, List<String>> expiredIds = new HashMap<>();
+        for (Map.Entry<String, List<String>> bucket : bucketIds.entrySet()) {
+            List<byte[]> fields = responses.get(bucket.getKey()).get();
+            for (int idIndex = 0; idIndex < bucket.getValue().size(); idIndex++) {
+                String id = bucket.getValue().get(idIndex);
+                byte[] field = idIndex < fields.size() ? fields.get(idIndex) : null;
+                byte[] value = decodeField(field, now);
+                map.put(id, value);
+                if (value == null)
+                    missingIds.add(id);
+                else if (timesToLive != null)
+                    timesToLive.put(id, decodeExpire(field) - now);
+                if (value == null && field != null)
+                    expiredIds.computeIfAbsent(bucket.getKey(), key -> new ArrayList<>()).add(id);
+            }
+        }
+        if (missingIds.isEmpty())
+            return map;
+        // Read top level keys of ids missing from buckets
+        pipeline = redis.pipelined();
+        Map<String, Response<byte[]>> fallbackValues = new HashMap<>();
+        Map<String, Response<Long>> fallbackTtls = new HashMap<>();
+        for (String id : missingIds) {
+            byte[] key = SafeEncoder.encode(keyPrefix + id);
+            fallbackValues.put(id, pipeline.get(key));
+            fallbackTtls.put(id, pipeline.pttl(key));
+        }
+        pipeline.sync();
+        // Copy found keys to buckets and remove expired fields
+        pipeline = redis.pipelined();
+        Map<String, byte[]> backfill = new HashMap<>();
+        for (String id : missingIds) {
+            byte[] value = fallbackValues.get(id).get();
+            Long ttl = fallbackTtls.get(id).get();
+            if (value == null || ttl == null || ttl <= 0)
+                continue;
+            map.put(id, value);
+            if (timesToLive != null)
+                timesToLive.put(id, ttl);
+            backfill.put(id, encodeField(value, now + ttl));
+        }
+        fallbackHits.addAndGet(backfill.size());
+        boolean hasDeletes = false;
+        for (Map.Entry<String, List<String>> bucket : expiredIds.entrySet()) {
+            expiredFields.addAndGet(bucket.getValue().size());
+            List<String> staleIds = new ArrayList<>(bucket.getValue());
+            staleIds.removeAll(backfill.keySet());
+            if (staleIds.isEmpty())
+                continue;
+            byte[][] fields = new byte[staleIds.size()][];
+            for (int idIndex = 0; idIndex < fields.length; idIndex++)
+                fields[idIndex] = SafeEncoder.encode(staleIds.get(idIndex));
+            pipeline.hdel(SafeEncoder.encode(bucket.getKey()), fields);
+            hasDeletes = true;
+        }
+        if (hasDeletes)
+            pipeline.sync();
+        if (!backfill.isEmpty())
+            writeFields(redis, keyPrefix, backfill, timeout);
+        return map;
+    }
+
+    /**
+     * Write fields to their buckets, sweeping expired fields and extending the bucket expire times
+     * @param redis connection
+     * @param keyPrefix type prefix
+     * @param fields id (key) - field value with expire time (value)
+     * @param timeout min bucket expire time in seconds
+     */
+    private void writeFields(Jedis redis, String keyPrefix, Map<String, byte[]> fields, int timeout) {
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> args = new ArrayList<>();
+        args.add(SafeEncoder.encode(String.valueOf(System.currentTimeMillis())));
+        args.add(SafeEncoder.encode(String.valueOf(timeout * 1000L)));
+        args.add(SafeEncoder.encode(String.valueOf(sweepFields)));
+        List<String> bucketKeys = new ArrayList<>();
+        for (Map.Entry<String, List<String>> bucket : groupByBucket(keyPrefix, fields.keySet()).entrySet()) {
+            bucketKeys.add(bucket.getKey());
+            keys.add(SafeEncoder.encode(bucket.getKey()));
+            args.add(SafeEncoder.encode(sweepCursors.getOrDefault(bucket.getKey(), "0")));
+            args.add(SafeEncoder.encode(String.valueOf(bucket.getValue().size())));
+            for (String id : bucket.getValue()) {
+                args.add(SafeEncoder.encode(id));
+                args.add(fields.get(id));
+            }
+        }
+        Object result = SET_SCRIPT.evalBinary(redis, keys, args);
+        if (!(result instanceof List))
+            return;
+        List<?> results = (List<?>) result;
+        for (int bucketIndex = 0; bucketIndex < bucketKeys.size() && bucketIndex < results.size(); bucketIndex++)
+            if (results.get(bucketIndex) instanceof byte[])
+                sweepCursors.put(bucketKeys.get(bucketIndex), SafeEncoder.encode((byte[]) results.get(bucketIndex)));
+        if (results.size() > bucketKeys.size() && results.get(bucketKeys.size()) instanceof Long)
+            sweptFields.addAndGet((Long) results.get(bucketKeys.size()));
+    }
+
+    @Override
+    public void set(Jedis redis, String keyPrefix, Map<String, byte[]> values, int timeout) {
+        if (values.isEmpty())
+            return;
+        long expire = System.currentTimeMillis() + timeout * 1000L;
+        Map<String, byte[]> fields = new HashMap<>();
+        for (Map.Entry<String, byte[]> value : values.entrySet())
+            fields.put(value.getKey(), encodeField(value.getValue(), expire));
+        writeFields(redis, keyPrefix, fields, timeout);
+    }
+
+    @Override
+    public List<String> setIfAbsent(Jedis redis, String keyPrefix, Map<String, byte[]> values, int timeout) {
+        List<String> written = new ArrayList<>();
+        if (values.isEmpty())
+            return written;
+        long now = System.currentTimeMillis();
+        long expire = now + timeout * 1000L;
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> args = new ArrayList<>();
+        args.add(SafeEncoder.encode(String.valueOf(now)));
+        args.add(SafeEncoder.encode(String.valueOf(timeout * 1000L)));
+        for (Map.Entry<String, byte[]> value : values.entrySet()) {
+            keys.add(SafeEncoder.encode(getBucket(keyPrefix, value.getKey())));
+            args.add(SafeEncoder.encode(value.getKey()));
+            args.add(encodeField(value.getValue(), expire));
+        }
+        Object result = SET_IF_ABSENT_SCRIPT.evalBinary(redis, keys, args);
+        if (result instanceof List)
+            for (Object id : (List<?>) result)
+                if (id instanceof byte[])
+                    written.add(SafeEncoder.encode((byte[]) id));
+        return written;
+    }
+
+    @Override
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("type", "hash");
+        stats.addProperty("buckets", buckets);
+        stats.addProperty("fallback_hits", fallbackHits.get());
+        stats.addProperty("expired_fields", expiredFields.get());
+        stats.addProperty("swept_fields", sweptFields.get());
+        return stats;
+    }
+}
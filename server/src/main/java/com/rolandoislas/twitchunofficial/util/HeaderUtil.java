@@ -1,10 +1,17 @@
 package com.rolandoislas.twitchunofficial.util;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import org.apache.maven.artifact.versioning.ComparableVersion;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import spark.Request;
+import spark.Response;
 
 public class HeaderUtil {
+    private static final int NOT_MODIFIED = 304;
+
     /**
      * Extract X-Twitched-Version header if present and wrap it in a ComparableVersion
      * @param request spark request
@@ -15,4 +22,85 @@ public class HeaderUtil {
         String versionString = request.headers("X-Twitched-Version");
         return new ComparableVersion(versionString == null ? "1.0" : versionString);
     }
+
+    /**
+     * Create a strong entity tag for a response body
+     * @param body response body
+     * @return quoted content hash
+     */
+    @NotNull
+    public static String createETag(String body) {
+        return createETag(Hashing.murmur3_128().hashString(body, Charsets.UTF_8));
+    }
+
+    /**
+     * Create a strong entity tag from a murmur3_128 hash of a response body
+     * @param bodyHash hash of the UTF-8 body
+     * @return quoted content hash
+     */
+    @NotNull
+    public static String createETag(HashCode bodyHash) {
+        return "\"" + bodyHash.toString() + "\"";
+    }
+
+    /**
+     * Check if an If-None-Match header value matches an entity tag
+     * @param ifNoneMatch header value - may be a comma separated list of weak or strong tags
+     * @param eTag entity tag
+     * @return header matches
+     */
+    public static boolean matchesETag(@Nullable String ifNoneMatch, @Nullable String eTag) {
+        if (ifNoneMatch == null || eTag == null)
+            return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(eTag))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the If-None-Match header
+     * @param request spark request
+     * @return header value or null
+     */
+    @Nullable
+    public static String extractIfNoneMatch(Request request) {
+        return request.headers("If-None-Match");
+    }
+
+    /**
+     * Add ETag and Cache-Control headers and answer with 304 if the requester has the entity
+     * Clients are asked to revalidate every time, because pages change often and depend on auth headers.
+     * @param request spark request
+     * @param response spark response
+     * @param eTag entity tag of the body
+     * @return response should be sent with an empty body
+     */
+    public static boolean checkNotModified(Request request, Response response, @Nullable String eTag) {
+        if (eTag == null)
+            return false;
+        response.header("ETag", eTag);
+        response.header("Cache-Control", "private, no-cache");
+        if (!matchesETag(extractIfNoneMatch(request), eTag))
+            return false;
+        response.status(NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * Add an ETag to a response body
+     * @see #checkNotModified(Request, Response, String)
+     * @param body response body
+     * @return body or an empty string if the requester has the entity
+     */
+    @Nullable
+    public static String withETag(Request request, Response response, @Nullable String body) {
+        if (body == null)
+            return null;
+        return checkNotModified(request, response, createETag(body)) ? "" : body;
+    }
 }
@@ -0,0 +1,180 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps anonymous master playlists of the most requested channels cached
+ * Anonymous playlist requests are counted per channel. Every interval the most requested channels have their access
+ * token and master playlist requested and cached, so anonymous requests for them are a single cache read. Counts are
+ * halved every interval, so channels that stop being requested fall out of the warmed set. A lock per channel keeps
+ * nodes from warming the same channel in the same interval.
+ */
+public class HlsWarmer implements Runnable {
+    private static final String LOCK_KEY = "hls_warm";
+    private final ApiCache cache;
+    private final Function<String, @Nullable String> playlistLoader;
+    private final Function<String, String> cacheKey;
+    private final boolean enabled;
+    private final int channels;
+    private final long interval;
+    private final int timeout;
+    private final int maxTracked;
+    private final String owner = UUID.randomUUID().toString();
+    private final Map<String, AtomicLong> requests = new ConcurrentHashMap<>();
+    @SuppressWarnings("FieldCanBeLocal")
+    private boolean running = false;
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong warmed = new AtomicLong();
+    private final AtomicLong offline = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * @param cache cache the playlists are stored in
+     * @param playlistLoader requests an anonymous master playlist for a login - null if the channel is offline
+     * @param cacheKey cache key of the anonymous master playlist of a login
+     * @param enabled count requests - if false, requests are ignored
+     * @param channels max amount of channels warmed each interval
+     * @param interval milliseconds between warming
+     * @param timeout seconds a warmed playlist is cached. It should be shorter than the access token is valid.
+     * @param maxTracked max amount of channels counted. Requests for other channels are ignored until counts decay.
+     */
+    public HlsWarmer(ApiCache cache, Function<String, @Nullable String> playlistLoader,
+                     Function<String, String> cacheKey, boolean enabled, int channels, long interval, int timeout,
+                     int maxTracked) {
+        this.cache = cache;
+        this.playlistLoader = playlistLoader;
+        this.cacheKey = cacheKey;
+        this.enabled = enabled;
+        this.channels = channels;
+        this.interval = interval;
+        this.timeout = timeout;
+        this.maxTracked = maxTracked;
+    }
+
+    /**
+     * Count an anonymous playlist request
+     * @param login channel login
+     */
+    public void recordRequest(String login) {
+        if (!enabled)
+            return;
+        AtomicLong count = requests.get(login);
+        if (count == null) {
+            if (requests.size() >= maxTracked)
+                return;
+            count = requests.computeIfAbsent(login, key -> new AtomicLong());
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public void run() {
+        running = true;
+        while (running) {
+            try {
+                Thread.sleep(interval);
+                warm();
+            }
+            catch (InterruptedException e) {
+                Logger.exception(e);
+                running = false;
+            }
+            // Catch all errors. The warmer should never die.
+            catch (Exception e) {
+                Logger.exception(e);
+            }
+        }
+    }
+
+    /**
+     * Request and cache the playlists of the most requested channels
+     */
+    private void warm() {
+        List<String> logins = getMostRequested();
+        decay();
+        cycles.incrementAndGet();
+        Logger.debug("HlsWarmer: Warming %d channels", logins.size());
+        for (String login : logins) {
+            if (!cache.tryLock(ApiCache.createKey(LOCK_KEY, login), owner, interval)) {
+                skipped.incrementAndGet();
+                continue;
+            }
+            try {
+                String playlist = playlistLoader.apply(login);
+                if (playlist == null || playlist.isEmpty()) {
+                    offline.incrementAndGet();
+                    continue;
+                }
+                cache.set(cacheKey.apply(login), playlist, timeout);
+                warmed.incrementAndGet();
+            }
+            // Token requests halt when the channel does not exist
+            catch (Exception e) {
+                failed.incrementAndGet();
+                Logger.debug("HlsWarmer: Failed to warm %s: %s", login, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Get the channels with the most requests
+     * @return logins ordered from the most to the least requests
+     */
+    private List<String> getMostRequested() {
+        PriorityQueue<Map.Entry<String, Long>> leastFirst = new PriorityQueue<>(Math.max(1, channels),
+                Comparator.comparingLong(Map.Entry::getValue));
+        for (Map.Entry<String, AtomicLong> request : requests.entrySet()) {
+            long count = request.getValue().get();
+            if (count <= 0 || channels <= 0)
+                continue;
+            if (leastFirst.size() < channels)
+                leastFirst.add(new AbstractMap.SimpleImmutableEntry<>(request.getKey(), count));
+            else if (count > leastFirst.peek().getValue()) {
+                leastFirst.poll();
+                leastFirst.add(new AbstractMap.SimpleImmutableEntry<>(request.getKey(), count));
+            }
+        }
+        List<String> logins = new ArrayList<>(leastFirst.size());
+        while (!leastFirst.isEmpty())
+            logins.add(0, leastFirst.poll().getKey());
+        return logins;
+    }
+
+    /**
+     * Halve all counts and stop counting channels that reach zero
+     */
+    private void decay() {
+        for (Map.Entry<String, AtomicLong> request : requests.entrySet())
+            if (request.getValue().updateAndGet(count -> count / 2) == 0)
+                requests.remove(request.getKey(), request.getValue());
+    }
+
+    /**
+     * Get warming counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("enabled", enabled);
+        stats.addProperty("tracked", requests.size());
+        stats.addProperty("cycles", cycles.get());
+        stats.addProperty("warmed", warmed.get());
+        stats.addProperty("offline", offline.get());
+        stats.addProperty("failed", failed.get());
+        stats.addProperty("skipped", skipped.get());
+        return stats;
+    }
+}
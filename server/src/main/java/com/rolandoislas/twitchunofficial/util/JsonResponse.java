@@ -0,0 +1,150 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import org.jetbrains.annotations.Nullable;
+import spark.Request;
+import spark.Response;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes JSON responses directly to the servlet output stream
+ * The JSON is serialized once into a hash for the entity tag and a bounded buffer, then the buffer is written to the
+ * response, optionally gzip encoded. Bodies larger than the buffer are not held in memory as a whole and are
+ * serialized a second time into the response instead.
+ */
+public class JsonResponse {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_BUFFERED = 512 * 1024;
+    private static final boolean GZIP =
+            Boolean.parseBoolean(System.getenv().getOrDefault("RESPONSE_GZIP", "false"));
+
+    /**
+     * Write a value as the response body
+     * @param gson gson used to serialize the value
+     * @param request spark request
+     * @param response spark response
+     * @param value value to serialize
+     * @return empty string because the body has been written - null if the value is null
+     */
+    @Nullable
+    public static String write(Gson gson, Request request, Response response, @Nullable Object value) {
+        if (value == null)
+            return null;
+        HashingBuffer body = new HashingBuffer();
+        try (Writer hashWriter = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8),
+                BUFFER_SIZE)) {
+            gson.toJson(value, value.getClass(), gson.newJsonWriter(hashWriter));
+        }
+        catch (IOException e) {
+            Logger.exception(e);
+            return gson.toJson(value);
+        }
+        if (HeaderUtil.checkNotModified(request, response, HeaderUtil.createETag(body.hasher.hash())))
+            return "";
+        try (OutputStream out = openBody(request, response)) {
+            if (body.buffer != null)
+                body.buffer.writeTo(out);
+            else {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+                gson.toJson(value, value.getClass(), gson.newJsonWriter(writer));
+                writer.flush();
+            }
+        }
+        catch (IOException e) {
+            Logger.exception(e);
+        }
+        return "";
+    }
+
+    /**
+     * Write already serialized JSON as the response body
+     * The entity tag is the hash of the JSON, so it matches the tag of the same value written by
+     * {@link #write(Gson, Request, Response, Object)}.
+     * @param request spark request
+     * @param response spark response
+     * @param json serialized body
+     * @return empty string because the body has been written - null if the json is null
+     */
+    @Nullable
+    public static String write(Request request, Response response, @Nullable String json) {
+        if (json == null)
+            return null;
+        if (HeaderUtil.checkNotModified(request, response, HeaderUtil.createETag(json)))
+            return "";
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(openBody(request, response),
+                StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            writer.write(json);
+        }
+        catch (IOException e) {
+            Logger.exception(e);
+        }
+        return "";
+    }
+
+    /**
+     * Open the response body, gzip encoded if enabled and accepted by the requester
+     * @param request spark request
+     * @param response spark response
+     * @return body stream - closing it finishes the gzip stream
+     * @throws IOException failed to open the servlet output stream
+     */
+    private static OutputStream openBody(Request request, Response response) throws IOException {
+        boolean gzip = GZIP && acceptsGzip(request);
+        if (gzip)
+            response.header("Content-Encoding", "gzip");
+        OutputStream out = response.raw().getOutputStream();
+        return gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+    }
+
+    /**
+     * Check if a requester accepts gzip encoded bodies
+     * @param request spark request
+     * @return Accept-Encoding lists gzip
+     */
+    private static boolean acceptsGzip(Request request) {
+        String acceptEncoding = request.headers("Accept-Encoding");
+        if (acceptEncoding == null)
+            return false;
+        for (String encoding : acceptEncoding.split(","))
+            if (encoding.trim().split(";")[0].trim().equalsIgnoreCase("gzip"))
+                return true;
+        return false;
+    }
+
+    /**
+     * Hashes everything written to it and keeps a copy until it grows past the max buffered size
+     */
+    private static class HashingBuffer extends OutputStream {
+        private final Hasher hasher = Hashing.murmur3_128().newHasher();
+        @Nullable
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+
+        @Override
+        public void write(int b) {
+            hasher.putByte((byte) b);
+            if (buffer != null && buffer.size() >= MAX_BUFFERED)
+                buffer = null;
+            if (buffer != null)
+                buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            hasher.putBytes(b, off, len);
+            if (buffer != null && buffer.size() + len > MAX_BUFFERED)
+                buffer = null;
+            if (buffer != null)
+                buffer.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores every id as its own top level key with its own expire time
+ */
+class KeyCacheLayout implements CacheLayout {
+    @Override
+    public Map<String, byte[]> get(Jedis redis, String keyPrefix, List<String> ids, int timeout,
+                                   @Nullable Map<String, Long> timesToLive) {
+        Map<String, byte[]> map = new HashMap<>();
+        if (ids.isEmpty())
+            return map;
+        byte[][] keys = new byte[ids.size()][];
+        for (int idIndex = 0; idIndex < keys.length; idIndex++)
+            keys[idIndex] = SafeEncoder.encode(keyPrefix + ids.get(idIndex));
+        Pipeline pipeline = redis.pipelined();
+        Response<List<byte[]>> response = pipeline.mget(keys);
+        List<Response<Long>> ttls = new ArrayList<>();
+        if (timesToLive != null)
+            for (byte[] key : keys)
+                ttls.add(pipeline.pttl(key));
+        pipeline.sync();
+        List<byte[]> values = response.get();
+        for (int idIndex = 0; idIndex < keys.length; idIndex++) {
+            byte[] value = idIndex < values.size() ? values.get(idIndex) : null;
+            map.put(ids.get(idIndex), value);
+            if (value != null && timesToLive != null)
+                timesToLive.put(ids.get(idIndex), ttls.get(idIndex).get());
+        }
+        return map;
+    }
+
+    @Override
+    public void set(Jedis redis, String keyPrefix, Map<String, byte[]> values, int timeout) {
+        if (values.isEmpty())
+            return;
+        Pipeline pipeline = redis.pipelined();
+        for (Map.Entry<String, byte[]> value : values.entrySet())
+            pipeline.setex(SafeEncoder.encode(keyPrefix + value.getKey()), timeout, value.getValue());
+        pipeline.sync();
+    }
+
+    @Override
+    public List<String> setIfAbsent(Jedis redis, String keyPrefix, Map<String, byte[]> values, int timeout) {
+        List<String> written = new ArrayList<>();
+        if (values.isEmpty())
+            return written;
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> args = new ArrayList<>();
+        args.add(SafeEncoder.encode(String.valueOf(timeout)));
+        for (Map.Entry<String, byte[]> value : values.entrySet()) {
+            keys.add(SafeEncoder.encode(keyPrefix + value.getKey()));
+            args.add(value.getValue());
+        }
+        Object result = RedisScript.SET_IF_ABSENT.evalBinary(redis, keys, args);
+        if (result instanceof List)
+            for (Object key : (List<?>) result)
+                if (key instanceof byte[])
+                    written.add(SafeEncoder.encode((byte[]) key).substring(keyPrefix.length()));
+        return written;
+    }
+
+    @Override
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("type", "keys");
+        return stats;
+    }
+}
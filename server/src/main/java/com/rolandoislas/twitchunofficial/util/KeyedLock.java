@@ -0,0 +1,80 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reentrant locks keyed by string, created on first lock and removed when the last holder or waiter unlocks
+ * Each key counts the threads holding or waiting on its lock. The count is only changed inside the map's compute
+ * functions, so a lock is never removed while another thread is about to use it, and locking different keys never
+ * blocks on a shared monitor.
+ */
+public class KeyedLock {
+    private final Map<String, Entry> locks = new ConcurrentHashMap<>();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /**
+     * Lock a key, waiting if another thread holds it
+     * Every call must be followed by a call to unlock with the same key on the same thread.
+     * @param key key
+     */
+    public void lock(String key) {
+        Entry entry = locks.compute(key, (lockKey, existing) -> {
+            Entry locked = existing == null ? new Entry() : existing;
+            locked.holders++;
+            return locked;
+        });
+        if (!entry.lock.tryLock()) {
+            contended.incrementAndGet();
+            long start = System.nanoTime();
+            entry.lock.lock();
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            waitTime.addAndGet(waited);
+            maxWaitTime.accumulateAndGet(waited, Math::max);
+        }
+        acquired.incrementAndGet();
+    }
+
+    /**
+     * Unlock a key locked by the current thread
+     * @param key key
+     * @throws IllegalMonitorStateException if the current thread does not hold the key
+     */
+    public void unlock(String key) {
+        Entry entry = locks.get(key);
+        if (entry == null || !entry.lock.isHeldByCurrentThread())
+            throw new IllegalMonitorStateException(String.format("Lock %s is not held", key));
+        entry.lock.unlock();
+        locks.computeIfPresent(key, (lockKey, existing) -> --existing.holders == 0 ? null : existing);
+    }
+
+    /**
+     * Get lock counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("keys", locks.size());
+        stats.addProperty("acquired", acquired.get());
+        stats.addProperty("contended", contended.get());
+        stats.addProperty("wait_time", waitTime.get());
+        stats.addProperty("max_wait_time", maxWaitTime.get());
+        return stats;
+    }
+
+    /**
+     * Lock of a key and the amount of threads holding or waiting on it
+     */
+    private static class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int holders = 0;
+    }
+}
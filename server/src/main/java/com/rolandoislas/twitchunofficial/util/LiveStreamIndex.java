@@ -0,0 +1,262 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Stream;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.StreamList;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Index of the user ids of every live stream
+ * One node at a time pages through all live streams and stores the ids in Redis as a sorted array. The other nodes load
+ * the index when it changes. When the last sweep reached the end of the live streams and is recent enough, ids that
+ * are not in the index are known to be offline and do not need to be requested from the API.
+ * A channel that goes live after the sweep has passed its page is not in the index, so it is reported offline until
+ * the index is older than the max age. The max age is measured from the start of the sweep.
+ */
+public class LiveStreamIndex implements Runnable {
+    private static final String LOCK_KEY = ApiCache.createKey("live_index");
+    private static final long LOAD_INTERVAL = 30 * 1000;
+    private static final long RATE_LIMIT_WAIT = 60 * 1000;
+    private final ApiCache cache;
+    private final RateLimitGovernor rateLimitGovernor;
+    private final Function<@Nullable String, @Nullable StreamList> pageLoader;
+    private final long interval;
+    private final long maxAge;
+    private final int maxPages;
+    private final String owner = UUID.randomUUID().toString();
+    @SuppressWarnings("FieldCanBeLocal")
+    private boolean running = false;
+    private volatile Snapshot snapshot = new Snapshot(new long[0], 0, false);
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong offlineHits = new AtomicLong();
+
+    /**
+     * @param cache cache the index is shared through
+     * @param rateLimitGovernor governor page requests wait for
+     * @param pageLoader requests and caches a page of live streams after the passed cursor
+     * @param interval milliseconds between sweeps
+     * @param maxAge milliseconds a complete index is used to answer that a stream is offline
+     * @param maxPages max amount of pages requested in a sweep
+     */
+    public LiveStreamIndex(ApiCache cache, RateLimitGovernor rateLimitGovernor,
+                           Function<@Nullable String, @Nullable StreamList> pageLoader, long interval, long maxAge,
+                           int maxPages) {
+        this.cache = cache;
+        this.rateLimitGovernor = rateLimitGovernor;
+        this.pageLoader = pageLoader;
+        this.interval = interval;
+        this.maxAge = maxAge;
+        this.maxPages = maxPages;
+    }
+
+    @Override
+    public void run() {
+        running = true;
+        while (running) {
+            try {
+                if (cache.tryLock(LOCK_KEY, owner, interval))
+                    sweep();
+                else
+                    load();
+                Thread.sleep(Math.min(interval, LOAD_INTERVAL));
+            }
+            catch (InterruptedException e) {
+                Logger.exception(e);
+                running = false;
+            }
+            // Catch all errors. The index should never die.
+            catch (Exception e) {
+                Logger.exception(e);
+            }
+        }
+    }
+
+    /**
+     * Page through all live streams and store their user ids
+     * The lock is left to expire, so the next sweep starts an interval after this one started.
+     */
+    private void sweep() throws InterruptedException {
+        Logger.debug("LiveStreamIndex: Sweeping live streams");
+        long started = System.currentTimeMillis();
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        boolean complete = false;
+        for (int page = 0; page < maxPages; page++) {
+            if (!rateLimitGovernor.awaitCapacity(RateLimitGovernor.Priority.BACKGROUND, RATE_LIMIT_WAIT)) {
+                Logger.debug("LiveStreamIndex: Rate limit is low. Stopping sweep");
+                break;
+            }
+            StreamList streamList = pageLoader.apply(cursor);
+            if (streamList == null || streamList.getStreams() == null)
+                break;
+            for (Stream stream : streamList.getStreams())
+                if (stream.getUserId() != null)
+                    ids.add(stream.getUserId());
+            cursor = streamList.getPagination() != null ? streamList.getPagination().getCursor() : null;
+            if (cursor == null || cursor.isEmpty() || streamList.getStreams().isEmpty()) {
+                complete = true;
+                break;
+            }
+        }
+        sweeps.incrementAndGet();
+        // Keep a recent complete index over a partial one
+        Snapshot current = snapshot;
+        if (!complete && current.complete && started - current.updated <= maxAge)
+            return;
+        Snapshot sweepSnapshot = new Snapshot(toSortedIds(ids), started, complete);
+        snapshot = sweepSnapshot;
+        cache.setLiveIndex(sweepSnapshot.encode(), started,
+                (int) Math.max(ApiCache.TIMEOUT_HOUR, maxAge / 1000));
+        Logger.debug("LiveStreamIndex: Indexed %d live streams. Complete: %s", sweepSnapshot.ids.length,
+                complete);
+    }
+
+    /**
+     * Load the index stored by another node if it is newer than the current one
+     */
+    private void load() {
+        long updated = cache.getLiveIndexTime();
+        if (updated <= snapshot.updated)
+            return;
+        Snapshot loaded = Snapshot.decode(cache.getLiveIndex());
+        if (loaded != null && loaded.updated > snapshot.updated) {
+            snapshot = loaded;
+            loads.incrementAndGet();
+        }
+    }
+
+    /**
+     * Convert user ids to a sorted array
+     * Twitch user ids are numeric. Other ids are skipped.
+     * @param ids user ids
+     * @return sorted ids
+     */
+    private static long[] toSortedIds(List<String> ids) {
+        long[] sortedIds = new long[ids.size()];
+        int size = 0;
+        for (String id : ids) {
+            try {
+                sortedIds[size] = Long.parseLong(id);
+                size++;
+            }
+            catch (NumberFormatException ignore) {}
+        }
+        sortedIds = Arrays.copyOf(sortedIds, size);
+        Arrays.sort(sortedIds);
+        return sortedIds;
+    }
+
+    /**
+     * Remove ids that are known to be offline
+     * If the index is incomplete or too old, no ids are removed. Channels that went live after the sweep started may be
+     * removed.
+     * @param ids user ids
+     * @return ids that are live or not known to be offline
+     */
+    public List<String> removeOffline(List<String> ids) {
+        Snapshot current = snapshot;
+        if (!current.complete || System.currentTimeMillis() - current.updated > maxAge)
+            return ids;
+        List<String> possiblyLive = new ArrayList<>();
+        for (String id : ids) {
+            long numericId;
+            try {
+                numericId = Long.parseLong(id);
+            }
+            catch (NumberFormatException e) {
+                possiblyLive.add(id);
+                continue;
+            }
+            if (Arrays.binarySearch(current.ids, numericId) >= 0)
+                possiblyLive.add(id);
+        }
+        offlineHits.addAndGet(ids.size() - possiblyLive.size());
+        return possiblyLive;
+    }
+
+    /**
+     * Get index size and counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        Snapshot current = snapshot;
+        JsonObject stats = new JsonObject();
+        stats.addProperty("size", current.ids.length);
+        stats.addProperty("updated", current.updated);
+        stats.addProperty("complete", current.complete);
+        stats.addProperty("sweeps", sweeps.get());
+        stats.addProperty("loads", loads.get());
+        stats.addProperty("offline_hits", offlineHits.get());
+        return stats;
+    }
+
+    /**
+     * Immutable live ids of one sweep
+     */
+    private static class Snapshot {
+        private final long[] ids;
+        private final long updated;
+        private final boolean complete;
+
+        /**
+         * @param ids sorted user ids
+         * @param updated epoch milliseconds the sweep started at
+         * @param complete the sweep reached the end of the live streams
+         */
+        private Snapshot(long[] ids, long updated, boolean complete) {
+            this.ids = ids;
+            this.updated = updated;
+            this.complete = complete;
+        }
+
+        /**
+         * Encode as the update time, the complete flag, the amount of ids, and the ids
+         * @return bytes
+         */
+        private byte[] encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 1 + Integer.BYTES + ids.length * Long.BYTES);
+            buffer.putLong(updated);
+            buffer.put((byte) (complete ? 1 : 0));
+            buffer.putInt(ids.length);
+            for (long id : ids)
+                buffer.putLong(id);
+            return buffer.array();
+        }
+
+        /**
+         * Decode a snapshot written with encode
+         * @param bytes encoded snapshot
+         * @return snapshot or null if the bytes are null or malformed
+         */
+        @Nullable
+        private static Snapshot decode(@Nullable byte[] bytes) {
+            if (bytes == null)
+                return null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                long updated = buffer.getLong();
+                boolean complete = buffer.get() == 1;
+                int size = buffer.getInt();
+                if (size < 0 || size > buffer.remaining() / Long.BYTES)
+                    return null;
+                long[] ids = new long[size];
+                for (int idIndex = 0; idIndex < size; idIndex++)
+                    ids[idIndex] = buffer.getLong();
+                return new Snapshot(ids, updated, complete);
+            }
+            catch (BufferUnderflowException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache used in front of Redis.
+ * Entries are evicted least recently used first and expire after their time to live.
+ * @param <V> value type
+ */
+public class NearCache<V> {
+    private final int maxSize;
+    private final long timeToLive;
+    private final LinkedHashMap<String, Item<V>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxSize max amount of entries held before the least recently used entry is evicted
+     * @param timeToLive max time in milliseconds an entry is held
+     */
+    public NearCache(int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        entries = new LinkedHashMap<String, Item<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Item<V>> eldest) {
+                boolean evict = size() > NearCache.this.maxSize;
+                if (evict)
+                    evictions.incrementAndGet();
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Check if the cache holds any entries at all
+     * @return cache has a size greater than zero
+     */
+    public boolean isEnabled() {
+        return maxSize > 0 && timeToLive > 0;
+    }
+
+    /**
+     * Get a value
+     * @param key key
+     * @return value or null if it is not present or has expired
+     */
+    @Nullable
+    public synchronized V get(String key) {
+        Item<V> item = entries.get(key);
+        if (item == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (item.expires < System.currentTimeMillis()) {
+            entries.remove(key);
+            evictions.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return item.value;
+    }
+
+    /**
+     * Put a value using the default time to live
+     * @param key key
+     * @param value value - null values are not stored
+     */
+    public void put(String key, @Nullable V value) {
+        put(key, value, timeToLive);
+    }
+
+    /**
+     * Put a value
+     * @param key key
+     * @param value value - null values are not stored
+     * @param timeToLive milliseconds before the entry expires. Capped to the default time to live. Values with no time
+     *                   left are not stored.
+     */
+    public synchronized void put(String key, @Nullable V value, long timeToLive) {
+        if (!isEnabled() || value == null || timeToLive <= 0)
+            return;
+        long expires = System.currentTimeMillis() + Math.min(timeToLive, this.timeToLive);
+        entries.put(key, new Item<>(value, expires));
+    }
+
+    /**
+     * Remove a key
+     * @param key key to remove
+     */
+    public synchronized void invalidate(String key) {
+        if (entries.remove(key) != null)
+            invalidations.incrementAndGet();
+    }
+
+    /**
+     * Remove all keys
+     */
+    public synchronized void clear() {
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    private static class Item<V> {
+        private final V value;
+        private final long expires;
+
+        private Item(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Listens on a Redis channel for keys written by other instances and drops them from the local near cache.
+ * Messages are a node id line followed by one key per line. Messages published by this node are ignored.
+ */
+class NearCacheInvalidator extends JedisPubSub implements Runnable {
+    static final String CHANNEL = "_nc_invalidate";
+    private static final long RECONNECT_DELAY = 5000;
+    private final String nodeId;
+    private final Supplier<Jedis> connectionSupplier;
+    private final Consumer<String> invalidateKey;
+    private final Runnable invalidateAll;
+
+    /**
+     * @param nodeId id of this instance
+     * @param connectionSupplier supplies a dedicated (non-pooled) connection. Subscribing blocks the connection.
+     * @param invalidateKey called for every key invalidated by another node
+     * @param invalidateAll called when messages may have been missed (e.g. on reconnect)
+     */
+    NearCacheInvalidator(String nodeId, Supplier<Jedis> connectionSupplier, Consumer<String> invalidateKey,
+                         Runnable invalidateAll) {
+        this.nodeId = nodeId;
+        this.connectionSupplier = connectionSupplier;
+        this.invalidateKey = invalidateKey;
+        this.invalidateAll = invalidateAll;
+    }
+
+    @Override
+    public void run() {
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            try (Jedis jedis = connectionSupplier.get()) {
+                // Anything written while disconnected was missed
+                invalidateAll.run();
+                jedis.subscribe(this, CHANNEL);
+            }
+            catch (Exception e) {
+                Logger.exception(e);
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+            }
+            catch (InterruptedException e) {
+                Logger.exception(e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+        if (message == null)
+            return;
+        String[] lines = message.split("\n");
+        if (lines.length < 2 || lines[0].equals(nodeId))
+            return;
+        for (int lineIndex = 1; lineIndex < lines.length; lineIndex++)
+            invalidateKey.accept(lines[lineIndex]);
+    }
+
+    /**
+     * Create an invalidation message
+     * @param nodeId id of the publishing node
+     * @param keys keys that were written
+     * @return message
+     */
+    static String createMessage(String nodeId, Collection<String> keys) {
+        StringBuilder message = new StringBuilder(nodeId);
+        for (String key : keys)
+            message.append("\n").append(key);
+        return message.toString();
+    }
+}
@@ -0,0 +1,238 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides if a request to a rate limited API may be sent
+ * The API rate limit is a token bucket that refills its full size every minute. The bucket is kept in Redis so all
+ * nodes sharing the API credentials take from the same bucket, and it is corrected with the rate limit headers of
+ * every response. Each priority keeps a fraction of the bucket in reserve, so background work stops before requests
+ * made for a client are denied. If Redis can not be reached the last known state of this node is used.
+ * Every request takes its own token when it is sent (see UpstreamRequest#rateLimit). Work that sends many requests
+ * checks the capacity of its priority first, without taking tokens.
+ */
+public class RateLimitGovernor {
+    private static final long MIN_WAIT = 250;
+    private static final long MAX_WAIT = 60 * 1000;
+    private final ApiCache cache;
+    private final String bucket;
+    private final int defaultLimit;
+    private final Object localLock = new Object();
+    private long localLimit;
+    private double localTokens;
+    private long localUpdated;
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong observed = new AtomicLong();
+    private final AtomicLong localDecisions = new AtomicLong();
+
+    /**
+     * Request priority
+     */
+    public enum Priority {
+        /**
+         * Single request sent to the API - only denied when the bucket is empty
+         */
+        REQUEST(0),
+        /**
+         * Request made for a client
+         */
+        INTERACTIVE(0.25),
+        /**
+         * Request made for a client that will be followed by many more requests
+         */
+        INTERACTIVE_BULK(0.5),
+        /**
+         * Cache warming
+         */
+        BACKGROUND(0.625);
+
+        private final double reserve;
+
+        /**
+         * @param reserve fraction of the bucket that must be left after a request of this priority
+         */
+        Priority(double reserve) {
+            this.reserve = reserve;
+        }
+    }
+
+    /**
+     * @param cache cache the shared bucket is stored in
+     * @param bucket bucket name - nodes using the same name share a bucket
+     * @param defaultLimit bucket size used until a response reports one
+     */
+    public RateLimitGovernor(ApiCache cache, String bucket, int defaultLimit) {
+        this.cache = cache;
+        this.bucket = bucket;
+        this.defaultLimit = defaultLimit;
+        this.localLimit = defaultLimit;
+        this.localTokens = defaultLimit;
+        this.localUpdated = System.currentTimeMillis();
+    }
+
+    /**
+     * Take tokens for a request if enough are left for its priority
+     * @param priority request priority
+     * @param cost amount of requests that will be sent
+     * @return request may be sent
+     */
+    public boolean tryAcquire(Priority priority, int cost) {
+        return acquire(priority, cost) == 0;
+    }
+
+    /**
+     * Check if the bucket has more tokens than a priority keeps in reserve without taking any
+     * @param priority request priority
+     * @return requests of the priority may be sent
+     */
+    public boolean hasCapacity(Priority priority) {
+        return acquire(priority, 0) == 0;
+    }
+
+    /**
+     * Wait until the bucket has more tokens than a priority keeps in reserve without taking any
+     * @param priority request priority
+     * @param timeout max milliseconds to wait
+     * @return requests of the priority may be sent - false if the timeout passed first
+     * @throws InterruptedException thread interrupted while waiting
+     */
+    public boolean awaitCapacity(Priority priority, long timeout) throws InterruptedException {
+        return awaitAdmission(priority, 0, timeout);
+    }
+
+    /**
+     * Wait until tokens for a request can be taken
+     * @param priority request priority
+     * @param cost amount of requests that will be sent
+     * @param timeout max milliseconds to wait
+     * @return request may be sent - false if the timeout passed first
+     * @throws InterruptedException thread interrupted while waiting
+     */
+    public boolean awaitAdmission(Priority priority, int cost, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        long wait;
+        while ((wait = acquire(priority, cost)) > 0) {
+            long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0)
+                return false;
+            waited.incrementAndGet();
+            Thread.sleep(Math.min(wait, remaining));
+        }
+        return true;
+    }
+
+    /**
+     * Take tokens or estimate how long it will take until they can be taken
+     * @param priority request priority
+     * @param cost tokens to take
+     * @return 0 if the tokens were taken, otherwise milliseconds until the bucket has refilled enough
+     */
+    private long acquire(Priority priority, int cost) {
+        List<Long> decision = cache.acquireRateLimit(bucket, cost, priority.reserve, defaultLimit);
+        long tokens;
+        long limit;
+        boolean isAdmitted;
+        if (decision != null) {
+            isAdmitted = decision.get(0) == 1;
+            tokens = decision.get(1);
+            limit = decision.get(2);
+            updateLocal(limit, tokens);
+        }
+        else {
+            localDecisions.incrementAndGet();
+            synchronized (localLock) {
+                double estimate = getLocalTokens();
+                limit = localLimit;
+                isAdmitted = estimate - cost >= limit * priority.reserve;
+                if (isAdmitted)
+                    updateLocal(limit, estimate - cost);
+                tokens = (long) estimate;
+            }
+        }
+        if (isAdmitted) {
+            admitted.incrementAndGet();
+            return 0;
+        }
+        denied.incrementAndGet();
+        double missing = limit * priority.reserve + cost - tokens;
+        long wait = (long) Math.ceil(missing * 60000 / Math.max(1, limit));
+        return Math.min(MAX_WAIT, Math.max(MIN_WAIT, wait));
+    }
+
+    /**
+     * Update the bucket with the rate limit headers of a response
+     * Responses without rate limit headers are ignored.
+     * @param limit RateLimit-Limit header
+     * @param remaining RateLimit-Remaining header
+     * @param reset RateLimit-Reset header - epoch seconds the bucket is full again
+     */
+    public void observe(@Nullable String limit, @Nullable String remaining, @Nullable String reset) {
+        if (limit == null || remaining == null || reset == null)
+            return;
+        long limitValue = StringUtil.parseLong(limit);
+        long remainingValue = StringUtil.parseLong(remaining);
+        long resetValue = StringUtil.parseLong(reset) * 1000;
+        if (limitValue <= 0 || remainingValue < 0)
+            return;
+        observed.incrementAndGet();
+        long tokens = cache.observeRateLimit(bucket, limitValue, remainingValue, resetValue);
+        updateLocal(limitValue, tokens < 0 ? remainingValue : tokens);
+    }
+
+    /**
+     * Set the state used when Redis can not be reached
+     * @param limit bucket size
+     * @param tokens tokens left
+     */
+    private void updateLocal(long limit, double tokens) {
+        synchronized (localLock) {
+            localLimit = limit;
+            localTokens = tokens;
+            localUpdated = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Estimate the tokens left in the local state
+     * @return tokens
+     */
+    private double getLocalTokens() {
+        synchronized (localLock) {
+            double tokens = localTokens + (System.currentTimeMillis() - localUpdated) * localLimit / 60000d;
+            return Math.min(localLimit, tokens);
+        }
+    }
+
+    /**
+     * Get the last known amount of tokens left
+     * @return tokens
+     */
+    public long getRemaining() {
+        return (long) getLocalTokens();
+    }
+
+    /**
+     * Get bucket state and admission counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("bucket", bucket);
+        synchronized (localLock) {
+            stats.addProperty("limit", localLimit);
+        }
+        stats.addProperty("remaining", getRemaining());
+        stats.addProperty("admitted", admitted.get());
+        stats.addProperty("denied", denied.get());
+        stats.addProperty("waited", waited.get());
+        stats.addProperty("observed", observed.get());
+        stats.addProperty("local_decisions", localDecisions.get());
+        return stats;
+    }
+}
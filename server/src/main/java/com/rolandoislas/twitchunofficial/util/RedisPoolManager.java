@@ -0,0 +1,159 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import com.heroku.sdk.EnvKeyStore;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
+import redis.clients.util.JedisURIHelper;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.cert.CertificateException;
+
+/**
+ * Creates and sizes the Redis connection pool
+ * Connections are authenticated once when they are created and idle connections are validated in the background.
+ */
+public class RedisPoolManager {
+    // Connections used outside of request threads (follows cacher, queue consumer)
+    private static final int BACKGROUND_CONNECTIONS = 2;
+    private static final long EVICTION_INTERVAL = 30 * 1000;
+    private static final long MIN_EVICTABLE_IDLE_TIME = 60 * 1000;
+    private final JedisPool pool;
+    private final int maxTotal;
+    private final String password;
+    @Nullable private URI uri;
+    private boolean useSsl;
+    @Nullable private SSLSocketFactory sslSocketFactory;
+
+    /**
+     * @param redisServer redis url
+     * @param threads amount of threads that may use a connection at the same time
+     */
+    public RedisPoolManager(String redisServer, int threads) {
+        String connectionLimit = System.getenv("REDIS_CONNECTIONS");
+        if (connectionLimit != null && !connectionLimit.isEmpty())
+            maxTotal = Math.max(1, (int) StringUtil.parseLong(connectionLimit));
+        else
+            maxTotal = Math.max(1, threads) + BACKGROUND_CONNECTIONS;
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setBlockWhenExhausted(true);
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxTotal);
+        poolConfig.setMinIdle(Math.min(maxTotal, BACKGROUND_CONNECTIONS));
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRunsMillis(EVICTION_INTERVAL);
+        poolConfig.setMinEvictableIdleTimeMillis(MIN_EVICTABLE_IDLE_TIME);
+        poolConfig.setNumTestsPerEvictionRun(-1);
+        // Create the pool
+        useSsl = Boolean.parseBoolean(System.getenv().getOrDefault("REDIS_SECURE", "true"));
+        if (useSsl)
+            redisServer = redisServer.replace("redis://", "rediss://");
+        URI uri = URI.create(redisServer);
+        JedisPool pool;
+        if (JedisURIHelper.isValid(uri)) {
+            this.uri = uri;
+            String host = uri.getHost();
+            int port = uri.getPort();
+            String password = JedisURIHelper.getPassword(uri);
+            this.password = password == null ? "" : password;
+            if (!useSsl) {
+                Logger.warn("Connecting to Redis without SSL");
+                pool = new JedisPool(poolConfig, host, port, Protocol.DEFAULT_TIMEOUT, password,
+                        Protocol.DEFAULT_DATABASE, null);
+            }
+            else {
+                try {
+                    sslSocketFactory = getSocketFactory();
+                    SSLParameters sslParameters = new SSLParameters();
+                    pool = new JedisPool(poolConfig, uri, sslSocketFactory, sslParameters, null);
+                }
+                catch (CertificateException | NoSuchAlgorithmException | KeyStoreException | IOException |
+                        KeyManagementException e) {
+                    Logger.exception(e);
+                    pool = new JedisPool(poolConfig, Protocol.DEFAULT_HOST);
+                    this.uri = null;
+                }
+            }
+        }
+        else {
+            pool = new JedisPool(poolConfig, Protocol.DEFAULT_HOST);
+            this.password = "";
+        }
+        this.pool = pool;
+        Logger.info("Redis pool size: %d", maxTotal);
+    }
+
+    /**
+     * Create a socket factory with the env var trusted cert
+     * @return socket factory that trusts the env var
+     */
+    private SSLSocketFactory getSocketFactory() throws CertificateException, NoSuchAlgorithmException,
+            KeyStoreException, IOException, KeyManagementException {
+        String cert = System.getenv().getOrDefault("REDIS_TRUST", "")
+                .replace("\\n", "\n");
+        EnvKeyStore keyStore = EnvKeyStore.createFromPEMStrings(cert,
+                new BigInteger(130, new SecureRandom()).toString(32));
+        String algorithm = TrustManagerFactory.getDefaultAlgorithm();
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(algorithm);
+        trustManagerFactory.init(keyStore.keyStore());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagerFactory.getTrustManagers(), new SecureRandom());
+        return sslContext.getSocketFactory();
+    }
+
+    /**
+     * Borrow a connection from the pool
+     * The pool authenticates connections when they are created. Close the connection to return it.
+     * @return pooled connection
+     */
+    public Jedis getResource() {
+        return pool.getResource();
+    }
+
+    /**
+     * Create a connection that is not managed by the pool
+     * The caller is responsible for closing it.
+     * @return connected and authenticated jedis instance
+     */
+    public Jedis createConnection() {
+        Jedis jedis;
+        if (uri == null)
+            jedis = new Jedis();
+        else if (useSsl)
+            jedis = new Jedis(uri, sslSocketFactory, new SSLParameters(), null);
+        else
+            jedis = new Jedis(uri.getHost(), uri.getPort(), Protocol.DEFAULT_TIMEOUT);
+        jedis.connect();
+        if (!useSsl && !password.isEmpty())
+            jedis.auth(password);
+        return jedis;
+    }
+
+    /**
+     * Get pool usage and borrow wait times
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("max_total", maxTotal);
+        stats.addProperty("active", pool.getNumActive());
+        stats.addProperty("idle", pool.getNumIdle());
+        stats.addProperty("waiters", pool.getNumWaiters());
+        stats.addProperty("mean_borrow_wait_ms", pool.getMeanBorrowWaitTimeMillis());
+        stats.addProperty("max_borrow_wait_ms", pool.getMaxBorrowWaitTimeMillis());
+        return stats;
+    }
+}
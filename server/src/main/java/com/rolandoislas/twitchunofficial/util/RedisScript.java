@@ -0,0 +1,72 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.util.SafeEncoder;
+
+import java.util.List;
+
+/**
+ * Lua script that is run by its SHA1 digest
+ * The script body is only sent when the server does not have it cached.
+ */
+class RedisScript {
+    /**
+     * Set keys that do not exist
+     * KEYS: keys to set. ARGV: expire time in seconds followed by a value for each key.
+     * Returns the keys that were set.
+     */
+    static final RedisScript SET_IF_ABSENT = new RedisScript(
+            "local written = {}\n" +
+            "for i, key in ipairs(KEYS) do\n" +
+            "    if redis.call('SET', key, ARGV[i + 1], 'NX', 'EX', ARGV[1]) then\n" +
+            "        written[#written + 1] = key\n" +
+            "    end\n" +
+            "end\n" +
+            "return written");
+
+    private final String script;
+    private final String sha;
+
+    /**
+     * @param script lua script
+     */
+    RedisScript(String script) {
+        this.script = script;
+        this.sha = Hashing.sha1().hashString(script, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * Run the script
+     * @param redis connection
+     * @param keys keys passed as KEYS
+     * @param args arguments passed as ARGV
+     * @return script result
+     */
+    Object eval(Jedis redis, List<String> keys, List<String> args) {
+        try {
+            return redis.evalsha(sha, keys, args);
+        }
+        catch (JedisNoScriptException e) {
+            return redis.eval(script, keys, args);
+        }
+    }
+
+    /**
+     * Run the script with binary keys and arguments
+     * @param redis connection
+     * @param keys keys passed as KEYS
+     * @param args arguments passed as ARGV
+     * @return script result
+     */
+    Object evalBinary(Jedis redis, List<byte[]> keys, List<byte[]> args) {
+        try {
+            return redis.evalsha(SafeEncoder.encode(sha), keys, args);
+        }
+        catch (JedisNoScriptException e) {
+            return redis.eval(SafeEncoder.encode(script), keys, args);
+        }
+    }
+}
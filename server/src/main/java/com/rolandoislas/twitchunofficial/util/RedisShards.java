@@ -0,0 +1,159 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Spreads keys over multiple Redis servers with client side consistent hashing
+ * The first shard is the primary. Queues and pub/sub always use the primary. Keys are routed by their hash tag
+ * (the text between the first { and the following }) if they have one, like Redis Cluster, so related keys can be
+ * kept on the same shard. Adding a shard to the end of the list only moves keys to the new shard.
+ */
+class RedisShards {
+    private static final long IDLE_THREAD_TIMEOUT = 60;
+    private final List<RedisPoolManager> shards = new ArrayList<>();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param redisServers redis urls - the first is the primary
+     * @param threads amount of threads that may use a connection to each shard at the same time
+     */
+    RedisShards(List<String> redisServers, int threads) {
+        for (String redisServer : redisServers)
+            shards.add(new RedisPoolManager(redisServer, threads));
+        // Requests that fan out to more shards than there are free threads run the remaining work themselves
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(0, Math.max(1, threads), IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("Redis Shard Thread " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        if (shards.size() > 1)
+            Logger.info("Redis shards: %d", shards.size());
+    }
+
+    /**
+     * @return amount of shards
+     */
+    int size() {
+        return shards.size();
+    }
+
+    /**
+     * @return pool of the first shard
+     */
+    RedisPoolManager getPrimary() {
+        return shards.get(0);
+    }
+
+    /**
+     * Get the shard a key is stored on
+     * @param key redis key
+     * @return pool of the shard
+     */
+    RedisPoolManager getShard(String key) {
+        return shards.get(getShardIndex(key));
+    }
+
+    /**
+     * Get the index of the shard a key is stored on
+     * @param key redis key
+     * @return shard index
+     */
+    private int getShardIndex(String key) {
+        if (shards.size() == 1)
+            return 0;
+        String routingKey = key;
+        int tagStart = key.indexOf('{');
+        if (tagStart > -1) {
+            int tagEnd = key.indexOf('}', tagStart + 1);
+            if (tagEnd > tagStart + 1)
+                routingKey = key.substring(tagStart + 1, tagEnd);
+        }
+        long hash = Hashing.murmur3_128().hashString(routingKey, Charsets.UTF_8).asLong();
+        return Hashing.consistentHash(hash, shards.size());
+    }
+
+    /**
+     * Group values by the shard their key is stored on
+     * @param values values
+     * @param keyFunction returns the redis key of a value
+     * @return shard (key) - values (value)
+     */
+    <T> Map<RedisPoolManager, List<T>> groupByShard(Collection<T> values, Function<T, String> keyFunction) {
+        Map<RedisPoolManager, List<T>> groups = new HashMap<>();
+        for (T value : values)
+            groups.computeIfAbsent(getShard(keyFunction.apply(value)), shard -> new ArrayList<>()).add(value);
+        return groups;
+    }
+
+    /**
+     * Run work for each shard in parallel and wait for all of it to finish
+     * A single group is run on the calling thread.
+     * @param groups shard (key) - values (value)
+     * @param work called with a shard and the values stored on it
+     * @return results of every group
+     */
+    <T, R> List<R> forEachShard(Map<RedisPoolManager, List<T>> groups,
+                                ShardFunction<T, R> work) {
+        List<R> results = new ArrayList<>();
+        if (groups.size() == 1) {
+            Map.Entry<RedisPoolManager, List<T>> group = groups.entrySet().iterator().next();
+            results.add(work.apply(group.getKey(), group.getValue()));
+            return results;
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>();
+        for (Map.Entry<RedisPoolManager, List<T>> group : groups.entrySet())
+            futures.add(CompletableFuture.supplyAsync(() -> work.apply(group.getKey(), group.getValue()),
+                    executor));
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(future.join());
+            }
+            catch (CompletionException e) {
+                Logger.exception(e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get pool stats of every shard
+     * @return stats json of the primary - other shards are listed under "shards"
+     */
+    JsonObject getStats() {
+        JsonObject stats = getPrimary().getStats();
+        if (shards.size() > 1) {
+            JsonArray shardStats = new JsonArray();
+            for (RedisPoolManager shard : shards)
+                shardStats.add(shard.getStats());
+            stats.add("shards", shardStats);
+        }
+        return stats;
+    }
+
+    /**
+     * Work done with the values stored on one shard
+     */
+    @FunctionalInterface
+    interface ShardFunction<T, R> {
+        R apply(RedisPoolManager shard, List<T> values);
+    }
+}
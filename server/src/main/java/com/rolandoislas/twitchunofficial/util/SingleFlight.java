@@ -0,0 +1,159 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent cache misses for the same key into one load
+ * Callers that miss while a load for the key is in flight wait for its result instead of loading again.
+ * Optionally a Redis lock is used so only one node loads a key while the others wait for it to be cached.
+ */
+public class SingleFlight {
+    private static final long POLL_INTERVAL = 50;
+    private final ApiCache cache;
+    private final boolean distributed;
+    private final long lockTimeout;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong remoteHits = new AtomicLong();
+    private final AtomicLong remoteTimeouts = new AtomicLong();
+
+    /**
+     * @param cache cache polled for values loaded by other nodes
+     * @param distributed use a Redis lock to coalesce loads across nodes
+     * @param lockTimeout milliseconds a node waits on another node's load before loading itself
+     */
+    public SingleFlight(ApiCache cache, boolean distributed, long lockTimeout) {
+        this.cache = cache;
+        this.distributed = distributed;
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Load a value, joining a load of the same key that is already in flight on this node
+     * @param key cache key
+     * @param loader loads the value
+     * @return loaded value
+     */
+    @Nullable
+    public String execute(String key, Supplier<String> loader) {
+        return execute(key, loader, false);
+    }
+
+    /**
+     * Load a value, joining a load of the same key that is already in flight on this or another node
+     * The loader is expected to store its value at the key with ApiCache so other nodes can read it.
+     * @param key cache key
+     * @param loader loads and caches the value
+     * @return loaded value
+     */
+    @Nullable
+    public String executeDistributed(String key, Supplier<String> loader) {
+        return execute(key, loader, distributed);
+    }
+
+    @Nullable
+    private String execute(String key, Supplier<String> loader, boolean useLock) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.join();
+            }
+            catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        try {
+            String value = useLock ? loadWithLock(key, loader) : load(loader);
+            future.complete(value);
+            return value;
+        }
+        catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Load a value
+     * @param loader loader
+     * @return value
+     */
+    @Nullable
+    private String load(Supplier<String> loader) {
+        loads.incrementAndGet();
+        return loader.get();
+    }
+
+    /**
+     * Load a value when the Redis lock is acquired or wait for the node holding it to cache the value
+     * @param key cache key
+     * @param loader loader
+     * @return value
+     */
+    @Nullable
+    private String loadWithLock(String key, Supplier<String> loader) {
+        String owner = UUID.randomUUID().toString();
+        long end = System.currentTimeMillis() + lockTimeout;
+        while (!cache.tryLock(key, owner, lockTimeout)) {
+            String value = cache.get(key);
+            if (value != null) {
+                remoteHits.incrementAndGet();
+                return value;
+            }
+            if (System.currentTimeMillis() >= end) {
+                remoteTimeouts.incrementAndGet();
+                return load(loader);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            }
+            catch (InterruptedException e) {
+                Logger.exception(e);
+                return load(loader);
+            }
+        }
+        try {
+            // Another node may have finished loading before the lock was acquired
+            String value = cache.get(key);
+            if (value != null) {
+                remoteHits.incrementAndGet();
+                return value;
+            }
+            return load(loader);
+        }
+        finally {
+            cache.unlock(key, owner);
+        }
+    }
+
+    /**
+     * Get load and coalesce counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("distributed", distributed);
+        stats.addProperty("in_flight", inFlight.size());
+        stats.addProperty("loads", loads.get());
+        stats.addProperty("coalesced", coalesced.get());
+        stats.addProperty("remote_hits", remoteHits.get());
+        stats.addProperty("remote_timeouts", remoteTimeouts.get());
+        return stats;
+    }
+}
@@ -0,0 +1,223 @@
+package com.rolandoislas.twitchunofficial.util;
+
+import com.google.gson.JsonObject;
+import com.rolandoislas.twitchunofficial.data.model.StreamQuality;
+import com.rolandoislas.twitchunofficial.data.model.StreamQualityRule;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Stream qualities compiled to immutable rules keyed by model
+ * Every model has a rule precompiled for each fps and quality limit, so a lookup is a single map get. Models with an X
+ * are also reachable by their EU name. The table is compiled on first use and recompiled when any node publishes a
+ * reload after the stream qualities change.
+ */
+public class StreamQualityTable extends JedisPubSub implements Runnable {
+    private static final String CHANNEL = "_sq_reload";
+    private static final long RECONNECT_DELAY = 5000;
+    private static final String NULL_MODEL = "null";
+    private final ApiCache cache;
+    private final Supplier<List<StreamQuality>> loader;
+    private final Runnable onReload;
+    private final Object reloadLock = new Object();
+    private volatile Table table;
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong defaultHits = new AtomicLong();
+
+    /**
+     * @param cache cache used to publish and listen for reloads
+     * @param loader loads the stream qualities
+     * @param onReload called after the table is recompiled
+     */
+    public StreamQualityTable(ApiCache cache, Supplier<List<StreamQuality>> loader, Runnable onReload) {
+        this.cache = cache;
+        this.loader = loader;
+        this.onReload = onReload;
+    }
+
+    /**
+     * Get the rule for a model limited to an fps and quality
+     * @param model roku model in the format nnnnX - null uses the rule stored for the "null" model
+     * @param fps requested fps - below 60 disables 60 fps qualities
+     * @param quality requested vertical resolution
+     * @return rule for the model or the default rule if the model has none - the default rule is not limited
+     */
+    public StreamQualityRule getRule(@Nullable String model, int fps, int quality) {
+        Table current = getTable();
+        StreamQualityRule[] rules = current.rules.get(model == null ? NULL_MODEL : model);
+        if (rules == null) {
+            defaultHits.incrementAndGet();
+            rules = current.defaultRules;
+        }
+        int limitLevel = StreamQualityRule.getLimitLevel(quality);
+        if (limitLevel == 0)
+            Logger.warn("Quality limited to less than 240p");
+        return rules[(fps < 60 ? 0 : StreamQualityRule.LIMIT_LEVELS) + limitLevel];
+    }
+
+    /**
+     * Get the version of the current table
+     * Values derived from rules can be keyed by the version to ignore values from before a reload.
+     * @return version
+     */
+    public long getVersion() {
+        return getTable().version;
+    }
+
+    /**
+     * Get the current table, compiling it if this is the first use
+     * @return table
+     */
+    private Table getTable() {
+        Table current = table;
+        if (current != null)
+            return current;
+        synchronized (reloadLock) {
+            if (table == null)
+                reload();
+            return table;
+        }
+    }
+
+    /**
+     * Load and compile the stream qualities
+     */
+    public void reload() {
+        List<StreamQuality> streamQualities = loader.get();
+        synchronized (reloadLock) {
+            long version = table == null ? 1 : table.version + 1;
+            table = compile(streamQualities, version);
+        }
+        reloads.incrementAndGet();
+        Logger.debug("StreamQualityTable: Compiled %d stream qualities", streamQualities.size());
+        onReload.run();
+    }
+
+    /**
+     * Tell all nodes, including this one, to reload the table
+     */
+    public void publishReload() {
+        try (Jedis redis = cache.getAuthenticatedJedis()) {
+            redis.publish(CHANNEL, String.valueOf(System.currentTimeMillis()));
+        }
+        catch (Exception e) {
+            Logger.exception(e);
+            reload();
+        }
+    }
+
+    /**
+     * Compile stream qualities into rules
+     * The first valid quality of a model is used, the same as a scan of the list would.
+     * @param streamQualities qualities
+     * @param version table version
+     * @return table
+     */
+    private static Table compile(List<StreamQuality> streamQualities, long version) {
+        Map<String, StreamQualityRule[]> rules = new HashMap<>();
+        for (StreamQuality streamQuality : streamQualities)
+            if (streamQuality.validate())
+                rules.putIfAbsent(streamQuality.getModel(), compile(streamQuality));
+        // EU models use the rules of the matching X model
+        Map<String, StreamQualityRule[]> aliases = new HashMap<>();
+        for (Map.Entry<String, StreamQualityRule[]> rule : rules.entrySet())
+            if (rule.getKey().contains("X"))
+                aliases.put(rule.getKey().replace("X", "EU"), rule.getValue());
+        for (Map.Entry<String, StreamQualityRule[]> alias : aliases.entrySet())
+            rules.putIfAbsent(alias.getKey(), alias.getValue());
+        // Quality not found in database
+        // Send a sensible 720p 30fps 7mbps default quality
+        // The default is not limited by the requested fps or quality
+        StreamQualityRule defaultRule = new StreamQualityRule(new StreamQuality(NULL_MODEL, 7000000, "", true, false,
+                true, false, true, false, true, false, true));
+        StreamQualityRule[] defaultRules = new StreamQualityRule[StreamQualityRule.LIMIT_LEVELS * 2];
+        Arrays.fill(defaultRules, defaultRule);
+        return new Table(version, rules, defaultRules);
+    }
+
+    /**
+     * Compile a quality for every fps and quality limit
+     * @param streamQuality quality
+     * @return rules indexed by fps (below 60, then 60) and limit level
+     */
+    private static StreamQualityRule[] compile(StreamQuality streamQuality) {
+        StreamQualityRule rule = new StreamQualityRule(streamQuality);
+        StreamQualityRule[] rules = new StreamQualityRule[StreamQualityRule.LIMIT_LEVELS * 2];
+        for (int limitLevel = 0; limitLevel < StreamQualityRule.LIMIT_LEVELS; limitLevel++) {
+            rules[limitLevel] = rule.limit(false, limitLevel);
+            rules[StreamQualityRule.LIMIT_LEVELS + limitLevel] = rule.limit(true, limitLevel);
+        }
+        return rules;
+    }
+
+    @Override
+    public void run() {
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            try (Jedis jedis = cache.createSubscriberConnection()) {
+                // A reload may have been published while disconnected
+                if (table != null)
+                    reload();
+                jedis.subscribe(this, CHANNEL);
+            }
+            catch (Exception e) {
+                Logger.exception(e);
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+            }
+            catch (InterruptedException e) {
+                Logger.exception(e);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+        try {
+            reload();
+        }
+        // Catch all errors. The subscription should never die.
+        catch (Exception e) {
+            Logger.exception(e);
+        }
+    }
+
+    /**
+     * Get table version and counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        Table current = table;
+        JsonObject stats = new JsonObject();
+        stats.addProperty("version", current == null ? 0 : current.version);
+        stats.addProperty("models", current == null ? 0 : current.rules.size());
+        stats.addProperty("reloads", reloads.get());
+        stats.addProperty("default_hits", defaultHits.get());
+        return stats;
+    }
+
+    /**
+     * Immutable compiled rules of one reload
+     */
+    private static class Table {
+        private final long version;
+        private final Map<String, StreamQualityRule[]> rules;
+        private final StreamQualityRule[] defaultRules;
+
+        private Table(long version, Map<String, StreamQualityRule[]> rules, StreamQualityRule[] defaultRules) {
+            this.version = version;
+            this.rules = rules;
+            this.defaultRules = defaultRules;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.rolandoislas.twitchunofficial.util.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.rolandoislas.twitchunofficial.util.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes models stored in the cache
+ * Binary values start with a header: magic byte, format version, and flags. Values without the magic byte are
+ * read as Gson json so entries written before the binary format remain readable. Ids known not to exist are stored as a
+ * single zero byte tombstone. Json never starts with a zero byte, so a tombstone can not be confused with a value.
+ * @param <T> model type
+ */
+public abstract class CacheCodec<T> {
+    private static final byte MAGIC = (byte) 0xC7;
+    private static final byte FLAG_DEFLATE = 1;
+    private static final int HEADER_SIZE = 3;
+    private static final byte TOMBSTONE = 0;
+    private final Class<T> type;
+    private final Gson gson;
+    private final boolean binary;
+    private final int compressThreshold;
+
+    /**
+     * @param type model class
+     * @param gson gson used for json values
+     * @param binary write the binary format. If false, json is written.
+     * @param compressThreshold encoded size in bytes above which values are compressed. Negative disables it.
+     */
+    CacheCodec(Class<T> type, Gson gson, boolean binary, int compressThreshold) {
+        this.type = type;
+        this.gson = gson;
+        this.binary = binary;
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * Current version of the binary format written by this codec
+     * @return version
+     */
+    abstract byte getVersion();
+
+    /**
+     * Write model fields
+     * @param out output
+     * @param value model
+     */
+    abstract void write(CodecOutput out, T value) throws IOException;
+
+    /**
+     * Read model fields
+     * @param in input
+     * @param version format version the value was written with
+     * @return model
+     */
+    abstract T read(CodecInput in, byte version) throws IOException;
+
+    /**
+     * Encode a model
+     * @param value model
+     * @return encoded bytes
+     */
+    public byte[] encode(T value) {
+        if (!binary)
+            return gson.toJson(value).getBytes(StandardCharsets.UTF_8);
+        try {
+            CodecOutput body = new CodecOutput();
+            write(body, value);
+            byte[] bodyBytes = body.toByteArray();
+            byte flags = 0;
+            if (compressThreshold >= 0 && bodyBytes.length > compressThreshold) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(bodyBytes.length);
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(compressed, deflater)) {
+                    deflaterStream.write(bodyBytes);
+                }
+                finally {
+                    deflater.end();
+                }
+                if (compressed.size() < bodyBytes.length) {
+                    bodyBytes = compressed.toByteArray();
+                    flags |= FLAG_DEFLATE;
+                }
+            }
+            byte[] encoded = new byte[HEADER_SIZE + bodyBytes.length];
+            encoded[0] = MAGIC;
+            encoded[1] = getVersion();
+            encoded[2] = flags;
+            System.arraycopy(bodyBytes, 0, encoded, HEADER_SIZE, bodyBytes.length);
+            return encoded;
+        }
+        catch (IOException e) {
+            Logger.exception(e);
+            return gson.toJson(value).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Encode the marker for an id that does not exist
+     * @return tombstone bytes
+     */
+    public static byte[] encodeTombstone() {
+        return new byte[] {TOMBSTONE};
+    }
+
+    /**
+     * Check if a value is the marker for an id that does not exist
+     * @param bytes encoded value
+     * @return value is a tombstone
+     */
+    public static boolean isTombstone(@Nullable byte[] bytes) {
+        return bytes != null && bytes.length == 1 && bytes[0] == TOMBSTONE;
+    }
+
+    /**
+     * Decode a model
+     * @param bytes binary or json encoded value
+     * @return model or null if bytes is null, a tombstone, or could not be decoded
+     */
+    @Nullable
+    public T decode(@Nullable byte[] bytes) {
+        if (bytes == null || bytes.length == 0 || isTombstone(bytes))
+            return null;
+        if (bytes[0] != MAGIC) {
+            try {
+                return gson.fromJson(new String(bytes, StandardCharsets.UTF_8), type);
+            }
+            catch (JsonParseException e) {
+                Logger.exception(e);
+                return null;
+            }
+        }
+        if (bytes.length < HEADER_SIZE)
+            return null;
+        byte version = bytes[1];
+        if (version > getVersion()) {
+            Logger.debug("Unsupported %s cache format version: %d", type.getSimpleName(), version);
+            return null;
+        }
+        InputStream body = new ByteArrayInputStream(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        if ((bytes[2] & FLAG_DEFLATE) != 0)
+            body = new InflaterInputStream(body);
+        try (CodecInput in = new CodecInput(body)) {
+            return read(in, version);
+        }
+        catch (IOException e) {
+            Logger.exception(e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.rolandoislas.twitchunofficial.util.codec;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads fields written by CodecOutput
+ */
+class CodecInput implements AutoCloseable {
+    private final InputStream in;
+
+    CodecInput(InputStream in) {
+        this.in = in;
+    }
+
+    @Nullable
+    String readString() throws IOException {
+        int length = readLength();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int count = in.read(bytes, read, length - read);
+            if (count < 0)
+                throw new EOFException();
+            read += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Nullable
+    ArrayList<String> readStringList() throws IOException {
+        int size = readLength();
+        if (size < 0)
+            return null;
+        ArrayList<String> values = new ArrayList<>(size);
+        for (int index = 0; index < size; index++)
+            values.add(readString());
+        return values;
+    }
+
+    boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    long readLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read a length written with an offset of one
+     * @return length or -1 for null
+     */
+    private int readLength() throws IOException {
+        long length = readVarLong() - 1;
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("Invalid length");
+        return (int) length;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException();
+        return b;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
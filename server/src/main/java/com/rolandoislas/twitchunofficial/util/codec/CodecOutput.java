@@ -0,0 +1,60 @@
+package com.rolandoislas.twitchunofficial.util.codec;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes length prefixed fields
+ * Lengths and numbers are written as variable length integers. Null strings and lists have a length of zero and
+ * other lengths are offset by one.
+ */
+class CodecOutput {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+
+    void writeString(@Nullable String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    void writeStringList(@Nullable List<String> values) {
+        if (values == null) {
+            writeVarLong(0);
+            return;
+        }
+        writeVarLong(values.size() + 1);
+        for (String value : values)
+            writeString(value);
+    }
+
+    void writeBoolean(boolean value) {
+        out.write(value ? 1 : 0);
+    }
+
+    /**
+     * Write a zig-zag encoded variable length long
+     * @param value signed value
+     */
+    void writeLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,40 @@
+package com.rolandoislas.twitchunofficial.util.codec;
+
+import com.google.gson.Gson;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Game;
+
+import java.io.IOException;
+
+public class GameCodec extends CacheCodec<Game> {
+    private static final byte VERSION = 1;
+
+    public GameCodec(Gson gson, boolean binary, int compressThreshold) {
+        super(Game.class, gson, binary, compressThreshold);
+    }
+
+    @Override
+    byte getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    void write(CodecOutput out, Game game) {
+        out.writeString(game.getId());
+        out.writeString(game.getName());
+        out.writeString(game.getBoxArtUrl());
+        out.writeBoolean(game.getViewers() != null);
+        if (game.getViewers() != null)
+            out.writeLong(game.getViewers());
+    }
+
+    @Override
+    Game read(CodecInput in, byte version) throws IOException {
+        Game game = new Game();
+        game.setId(in.readString());
+        game.setName(in.readString());
+        game.setBoxArtUrl(in.readString());
+        if (in.readBoolean())
+            game.setViewers(in.readLong());
+        return game;
+    }
+}
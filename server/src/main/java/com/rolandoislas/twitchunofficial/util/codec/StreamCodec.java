@@ -0,0 +1,87 @@
+package com.rolandoislas.twitchunofficial.util.codec;
+
+import com.google.gson.Gson;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Stream;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.UserName;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+public class StreamCodec extends CacheCodec<Stream> {
+    private static final byte VERSION = 1;
+
+    public StreamCodec(Gson gson, boolean binary, int compressThreshold) {
+        super(Stream.class, gson, binary, compressThreshold);
+    }
+
+    @Override
+    byte getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    void write(CodecOutput out, Stream stream) {
+        out.writeString(stream.getId());
+        out.writeString(stream.getUserId());
+        out.writeString(stream.getGameId());
+        out.writeStringList(stream.getCommunityIds());
+        out.writeString(stream.getType());
+        out.writeString(stream.getTitle());
+        out.writeLong(stream.getViewerCount());
+        out.writeString(stream.getStartedAt());
+        out.writeString(stream.getLanguage());
+        out.writeString(stream.getThumbnailUrl());
+        // VOD fields
+        out.writeString(stream.getDescription());
+        out.writeString(stream.getCreatedAt());
+        out.writeString(stream.getPublishedAt());
+        out.writeString(stream.getUrl());
+        out.writeString(stream.getViewable());
+        out.writeLong(stream.getViewCount());
+        out.writeString(stream.getDuration());
+        // Non-spec fields
+        UserName userName = stream.getUserName();
+        out.writeBoolean(userName != null);
+        if (userName != null) {
+            out.writeString(userName.getLogin());
+            out.writeString(userName.getDisplayName());
+        }
+        out.writeString(stream.getGameName());
+        out.writeLong(stream.getDurationSeconds());
+        out.writeBoolean(stream.isOnline());
+        out.writeBoolean(stream.isEncrypted());
+    }
+
+    @Override
+    Stream read(CodecInput in, byte version) throws IOException {
+        Stream stream = new Stream();
+        stream.setId(in.readString());
+        stream.setUserId(in.readString());
+        stream.setGameId(in.readString());
+        ArrayList<String> communityIds = in.readStringList();
+        if (communityIds != null)
+            stream.setCommunityIds(communityIds);
+        stream.setType(in.readString());
+        stream.setTitle(in.readString());
+        stream.setViewerCount(in.readLong());
+        stream.setStartedAt(in.readString());
+        stream.setLanguage(in.readString());
+        stream.setThumbnailUrl(in.readString());
+        // VOD fields
+        stream.setDescription(in.readString());
+        stream.setCreatedAt(in.readString());
+        stream.setPublishedAt(in.readString());
+        stream.setUrl(in.readString());
+        stream.setViewable(in.readString());
+        stream.setViewCount(in.readLong());
+        stream.setDuration(in.readString());
+        // Non-spec fields
+        if (in.readBoolean())
+            stream.setUserName(new UserName(in.readString(), in.readString()));
+        stream.setGameName(in.readString());
+        stream.setDurationSeconds(in.readLong());
+        stream.setOnline(in.readBoolean());
+        stream.setEncrypted(in.readBoolean());
+        return stream;
+    }
+}
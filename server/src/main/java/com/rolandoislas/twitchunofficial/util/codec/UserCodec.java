@@ -0,0 +1,51 @@
+package com.rolandoislas.twitchunofficial.util.codec;
+
+import com.google.gson.Gson;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.User;
+
+import java.io.IOException;
+
+public class UserCodec extends CacheCodec<User> {
+    private static final byte VERSION = 1;
+
+    public UserCodec(Gson gson, boolean binary, int compressThreshold) {
+        super(User.class, gson, binary, compressThreshold);
+    }
+
+    @Override
+    byte getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    void write(CodecOutput out, User user) {
+        out.writeString(user.getId());
+        out.writeString(user.getLogin());
+        out.writeString(user.getDisplayName());
+        out.writeString(user.getType());
+        out.writeString(user.getBroadcasterType());
+        out.writeString(user.getDescription());
+        out.writeString(user.getProfileImageUrl());
+        out.writeString(user.getOfflineImageUrl());
+        out.writeLong(user.getViewCount());
+        out.writeString(user.getEmail());
+        out.writeBoolean(user.isExists());
+    }
+
+    @Override
+    User read(CodecInput in, byte version) throws IOException {
+        User user = new User();
+        user.setId(in.readString());
+        user.setLogin(in.readString());
+        user.setDisplayName(in.readString());
+        user.setType(in.readString());
+        user.setBroadcasterType(in.readString());
+        user.setDescription(in.readString());
+        user.setProfileImageUrl(in.readString());
+        user.setOfflineImageUrl(in.readString());
+        user.setViewCount(in.readLong());
+        user.setEmail(in.readString());
+        user.setExists(in.readBoolean());
+        return user;
+    }
+}
@@ -0,0 +1,148 @@
+package com.rolandoislas.twitchunofficial.util.http;
+
+import com.google.gson.JsonObject;
+import com.rolandoislas.twitchunofficial.util.StringUtil;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.FormContentProvider;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.Fields;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared non-blocking HTTP client used for all upstream (Twitch) requests
+ * Connections are kept alive and pooled per host. Each host has a limit of open connections and queued requests, so a
+ * slow host can not take every connection. Requests complete on a small pool of client threads instead of holding a
+ * request thread while waiting on the network.
+ */
+public class UpstreamClient {
+    private static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
+    private static UpstreamClient instance;
+    private final HttpClient httpClient;
+    private final long timeout;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong unsuccessful = new AtomicLong();
+
+    private UpstreamClient() {
+        timeout = StringUtil.parseLong(System.getenv().getOrDefault("UPSTREAM_TIMEOUT", "15000"));
+        QueuedThreadPool executor = new QueuedThreadPool((int) Math.max(2, StringUtil.parseLong(
+                System.getenv().getOrDefault("UPSTREAM_THREADS", "8"))));
+        executor.setName("Upstream Client");
+        executor.setDaemon(true);
+        httpClient = new HttpClient(new SslContextFactory());
+        httpClient.setExecutor(executor);
+        httpClient.setMaxConnectionsPerDestination((int) Math.max(1, StringUtil.parseLong(
+                System.getenv().getOrDefault("UPSTREAM_CONNECTIONS_PER_HOST", "64"))));
+        httpClient.setMaxRequestsQueuedPerDestination((int) Math.max(1, StringUtil.parseLong(
+                System.getenv().getOrDefault("UPSTREAM_QUEUE_PER_HOST", "1024"))));
+        httpClient.setConnectTimeout(timeout);
+        httpClient.setFollowRedirects(true);
+        // Default agent is replaced by the template user agent
+        httpClient.setUserAgentField(null);
+        try {
+            httpClient.start();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Failed to start upstream client", e);
+        }
+    }
+
+    /**
+     * @return shared client
+     */
+    public static synchronized UpstreamClient getInstance() {
+        if (instance == null)
+            instance = new UpstreamClient();
+        return instance;
+    }
+
+    /**
+     * Create a template for requests with shared default headers
+     * @return template
+     */
+    public UpstreamTemplate createTemplate() {
+        return new UpstreamTemplate(this);
+    }
+
+    /**
+     * Send a request
+     * @param request request
+     * @return future completed with the response or an UpstreamException
+     */
+    CompletableFuture<UpstreamResponse<String>> send(UpstreamRequest request) {
+        CompletableFuture<UpstreamResponse<String>> future = new CompletableFuture<>();
+        Request clientRequest = httpClient.newRequest(request.getUrl())
+                .method(request.getMethod())
+                .timeout(timeout, TimeUnit.MILLISECONDS);
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet())
+            clientRequest.header(header.getKey(), header.getValue());
+        boolean formBody = request.getBody() == null && !request.getParams().isEmpty() &&
+                (request.getMethod() == HttpMethod.POST || request.getMethod() == HttpMethod.PUT);
+        if (formBody) {
+            Fields fields = new Fields();
+            for (Map.Entry<String, String> param : request.getParams())
+                fields.add(param.getKey(), param.getValue());
+            clientRequest.content(new FormContentProvider(fields));
+        }
+        else {
+            for (Map.Entry<String, String> param : request.getParams())
+                clientRequest.param(param.getKey(), param.getValue());
+        }
+        if (request.getBody() != null)
+            clientRequest.content(new StringContentProvider(request.getBody(), StandardCharsets.UTF_8));
+        requests.incrementAndGet();
+        inFlight.incrementAndGet();
+        clientRequest.send(new BufferingResponseListener(MAX_BODY_SIZE) {
+            @Override
+            public void onComplete(Result result) {
+                inFlight.decrementAndGet();
+                if (result.isFailed()) {
+                    failures.incrementAndGet();
+                    future.completeExceptionally(new UpstreamException(String.format("Request to %s failed: %s",
+                            request.getUrl(), result.getFailure().getMessage()), null, result.getFailure()));
+                    return;
+                }
+                Response response = result.getResponse();
+                String content = getContentAsString(getEncoding() == null ? "UTF-8" : getEncoding());
+                boolean success = response.getStatus() >= 200 && response.getStatus() < 300;
+                UpstreamResponse<String> upstreamResponse = new UpstreamResponse<>(response.getStatus(),
+                        response.getHeaders(), success ? content : null, success ? null : content);
+                if (!success)
+                    unsuccessful.incrementAndGet();
+                if (!success && request.isEnsureSuccess())
+                    future.completeExceptionally(new UpstreamException(String.format("%d %s",
+                            response.getStatus(), response.getReason()), upstreamResponse, null));
+                else
+                    future.complete(upstreamResponse);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get request counters
+     * @return stats json
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("in_flight", inFlight.get());
+        stats.addProperty("requests", requests.get());
+        stats.addProperty("failures", failures.get());
+        stats.addProperty("unsuccessful", unsuccessful.get());
+        return stats;
+    }
+}
@@ -0,0 +1,59 @@
+package com.rolandoislas.twitchunofficial.util.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Upstream request failed or returned an unsuccessful status
+ */
+public class UpstreamException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    @Nullable private final UpstreamResponse<?> response;
+
+    /**
+     * @param message error message
+     * @param response response if the server answered
+     * @param cause cause if the request failed
+     */
+    UpstreamException(String message, @Nullable UpstreamResponse<?> response, @Nullable Throwable cause) {
+        super(message, cause);
+        this.response = response;
+    }
+
+    /**
+     * Get the upstream exception a request future failed with
+     * @param error error a future completed with - may be wrapped in a CompletionException
+     * @return the upstream exception or a new one with the error as its cause
+     */
+    public static UpstreamException from(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null)
+            error = error.getCause();
+        if (error instanceof UpstreamException)
+            return (UpstreamException) error;
+        return new UpstreamException(String.valueOf(error.getMessage()), null, error);
+    }
+
+    /**
+     * @return response or null if the request failed before the server answered
+     */
+    @Nullable
+    public UpstreamResponse<?> getResponse() {
+        return response;
+    }
+
+    /**
+     * @return status code or 0 if the request failed before the server answered
+     */
+    public int getStatusCode() {
+        return response == null ? 0 : response.getStatusCode();
+    }
+
+    /**
+     * @return body of the unsuccessful response or null
+     */
+    @Nullable
+    public String getErrorBody() {
+        return response == null ? null : response.getErrorBody();
+    }
+}
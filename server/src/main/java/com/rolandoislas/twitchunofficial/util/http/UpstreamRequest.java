@@ -0,0 +1,164 @@
+package com.rolandoislas.twitchunofficial.util.http;
+
+import com.rolandoislas.twitchunofficial.util.RateLimitGovernor;
+import org.eclipse.jetty.http.HttpMethod;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Request built from an upstream template
+ * Params are sent in the query string, or as a form body for POST and PUT requests without a body. Iterable and array
+ * param values are sent as one param per element.
+ */
+public class UpstreamRequest {
+    private final UpstreamClient client;
+    private final HttpMethod method;
+    private final String url;
+    private final Map<String, String> headers;
+    private final List<Map.Entry<String, String>> params = new ArrayList<>();
+    @Nullable private String body;
+    private boolean ensureSuccess;
+    @Nullable private RateLimitGovernor rateLimitGovernor;
+
+    UpstreamRequest(UpstreamClient client, HttpMethod method, String url, Map<String, String> defaultHeaders) {
+        this.client = client;
+        this.method = method;
+        this.url = url;
+        this.headers = new LinkedHashMap<>(defaultHeaders);
+    }
+
+    /**
+     * Set a header, replacing a template default of the same name
+     */
+    public UpstreamRequest header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * Add a param
+     * @param name param name
+     * @param value value, iterable, or array - null values are skipped
+     */
+    public UpstreamRequest param(String name, @Nullable Object value) {
+        if (value == null)
+            return this;
+        if (value instanceof Iterable) {
+            for (Object element : (Iterable<?>) value)
+                param(name, element);
+        }
+        else if (value.getClass().isArray()) {
+            for (int elementIndex = 0; elementIndex < Array.getLength(value); elementIndex++)
+                param(name, Array.get(value, elementIndex));
+        }
+        else
+            params.add(new AbstractMap.SimpleImmutableEntry<>(name, String.valueOf(value)));
+        return this;
+    }
+
+    /**
+     * Add params
+     * @see #param(String, Object)
+     */
+    public UpstreamRequest params(Map<String, ?> params) {
+        for (Map.Entry<String, ?> param : params.entrySet())
+            param(param.getKey(), param.getValue());
+        return this;
+    }
+
+    /**
+     * Set the body
+     * @param body string body sent as UTF-8
+     */
+    public UpstreamRequest body(String body) {
+        this.body = body;
+        return this;
+    }
+
+    /**
+     * Fail with an UpstreamException if the response status is not 2xx
+     */
+    public UpstreamRequest ensureSuccess() {
+        ensureSuccess = true;
+        return this;
+    }
+
+    /**
+     * Take a token from a rate limit before the request is sent
+     * If the bucket is empty the request is not sent and fails with an UpstreamException.
+     * @param rateLimitGovernor governor of the API's rate limit - null to send without a token
+     */
+    public UpstreamRequest rateLimit(@Nullable RateLimitGovernor rateLimitGovernor) {
+        this.rateLimitGovernor = rateLimitGovernor;
+        return this;
+    }
+
+    /**
+     * Send the request without blocking
+     * The future is completed on a client thread. Heavy work should be moved to another executor.
+     * @return future completed with the response or an UpstreamException
+     */
+    public CompletableFuture<UpstreamResponse<String>> asStringAsync() {
+        if (rateLimitGovernor != null && !rateLimitGovernor.tryAcquire(RateLimitGovernor.Priority.REQUEST, 1)) {
+            CompletableFuture<UpstreamResponse<String>> denied = new CompletableFuture<>();
+            denied.completeExceptionally(new UpstreamException("Rate limit reached: " + url, null, null));
+            return denied;
+        }
+        return client.send(this);
+    }
+
+    /**
+     * Send the request and wait for the response
+     * @return response
+     * @throws UpstreamException the request failed, or the status was not 2xx and ensureSuccess was set
+     */
+    public UpstreamResponse<String> asString() throws UpstreamException {
+        try {
+            return asStringAsync().join();
+        }
+        catch (CompletionException e) {
+            throw UpstreamException.from(e);
+        }
+    }
+
+    /**
+     * Send the request, wait for it to complete, and ignore the body
+     * @throws UpstreamException the request failed, or the status was not 2xx and ensureSuccess was set
+     */
+    public void asVoid() throws UpstreamException {
+        asString();
+    }
+
+    HttpMethod getMethod() {
+        return method;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    List<Map.Entry<String, String>> getParams() {
+        return params;
+    }
+
+    @Nullable
+    String getBody() {
+        return body;
+    }
+
+    boolean isEnsureSuccess() {
+        return ensureSuccess;
+    }
+}
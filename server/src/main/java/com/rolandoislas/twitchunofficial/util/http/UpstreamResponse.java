@@ -0,0 +1,59 @@
+package com.rolandoislas.twitchunofficial.util.http;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Response of an upstream request
+ * @param <T> body type
+ */
+public class UpstreamResponse<T> {
+    private final int statusCode;
+    private final HttpFields headers;
+    @Nullable private final T body;
+    @Nullable private final String errorBody;
+
+    UpstreamResponse(int statusCode, HttpFields headers, @Nullable T body, @Nullable String errorBody) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.errorBody = errorBody;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return status code is 2xx
+     */
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Get a header value
+     * @param name header name
+     * @return first value of the header or null
+     */
+    @Nullable
+    public String getHeaderField(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @return body of a successful response
+     */
+    @Nullable
+    public T getBody() {
+        return body;
+    }
+
+    /**
+     * @return body of an unsuccessful response
+     */
+    @Nullable
+    public String getErrorBody() {
+        return errorBody;
+    }
+}
@@ -0,0 +1,44 @@
+package com.rolandoislas.twitchunofficial.util.http;
+
+import org.eclipse.jetty.http.HttpMethod;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Default headers for requests made with the shared upstream client
+ * Templates are cheap to create. Connections are owned by the client and shared by all templates.
+ */
+public class UpstreamTemplate {
+    private final UpstreamClient client;
+    private final Map<String, String> defaultHeaders = new LinkedHashMap<>();
+
+    UpstreamTemplate(UpstreamClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Set a header sent with every request created by this template
+     * @param name header name
+     * @param value header value
+     */
+    public void setDefaultHeader(String name, String value) {
+        defaultHeaders.put(name, value);
+    }
+
+    public UpstreamRequest get(String url) {
+        return new UpstreamRequest(client, HttpMethod.GET, url, defaultHeaders);
+    }
+
+    public UpstreamRequest post(String url) {
+        return new UpstreamRequest(client, HttpMethod.POST, url, defaultHeaders);
+    }
+
+    public UpstreamRequest put(String url) {
+        return new UpstreamRequest(client, HttpMethod.PUT, url, defaultHeaders);
+    }
+
+    public UpstreamRequest delete(String url) {
+        return new UpstreamRequest(client, HttpMethod.DELETE, url, defaultHeaders);
+    }
+}
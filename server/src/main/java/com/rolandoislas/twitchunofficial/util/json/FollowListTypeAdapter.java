@@ -0,0 +1,79 @@
+package com.rolandoislas.twitchunofficial.util.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Follow;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.FollowList;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Pagination;
+
+import java.io.IOException;
+
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextInt;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextList;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextLong;
+
+/**
+ * Reads and writes follow lists without reflection
+ */
+class FollowListTypeAdapter extends TypeAdapter<FollowList> {
+    private final TypeAdapter<Follow> followAdapter;
+    private final TypeAdapter<Pagination> paginationAdapter;
+
+    /**
+     * @param followAdapter adapter for the follows in the list
+     * @param paginationAdapter adapter for the pagination cursor
+     */
+    FollowListTypeAdapter(TypeAdapter<Follow> followAdapter, TypeAdapter<Pagination> paginationAdapter) {
+        this.followAdapter = followAdapter;
+        this.paginationAdapter = paginationAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, FollowList followList) throws IOException {
+        out.beginObject();
+        out.name("total").value(followList.getTotal());
+        if (followList.getFollows() != null) {
+            out.name("data").beginArray();
+            for (Follow follow : followList.getFollows())
+                followAdapter.write(out, follow);
+            out.endArray();
+        }
+        if (followList.getPagination() != null) {
+            out.name("pagination");
+            paginationAdapter.write(out, followList.getPagination());
+        }
+        out.name("rateLimitRemaining").value(followList.getRateLimitRemaining());
+        out.endObject();
+    }
+
+    @Override
+    public FollowList read(JsonReader in) throws IOException {
+        FollowList followList = new FollowList();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "total":
+                    Long total = nextLong(in);
+                    if (total != null)
+                        followList.setTotal(total);
+                    break;
+                case "data":
+                    followList.setFollows(nextList(in, followAdapter));
+                    break;
+                case "pagination":
+                    followList.setPagination(paginationAdapter.read(in));
+                    break;
+                case "rateLimitRemaining":
+                    Integer rateLimitRemaining = nextInt(in);
+                    if (rateLimitRemaining != null)
+                        followList.setRateLimitRemaining(rateLimitRemaining);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return followList;
+    }
+}
@@ -0,0 +1,47 @@
+package com.rolandoislas.twitchunofficial.util.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Follow;
+
+import java.io.IOException;
+
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextString;
+
+/**
+ * Reads and writes follows without reflection
+ */
+class FollowTypeAdapter extends TypeAdapter<Follow> {
+    @Override
+    public void write(JsonWriter out, Follow follow) throws IOException {
+        out.beginObject();
+        out.name("from_id").value(follow.getFromId());
+        out.name("to_id").value(follow.getToId());
+        out.name("followed_at").value(follow.getFollowedAt());
+        out.endObject();
+    }
+
+    @Override
+    public Follow read(JsonReader in) throws IOException {
+        Follow follow = new Follow();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "from_id":
+                    follow.setFromId(nextString(in));
+                    break;
+                case "to_id":
+                    follow.setToId(nextString(in));
+                    break;
+                case "followed_at":
+                    follow.setFollowedAt(nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return follow;
+    }
+}
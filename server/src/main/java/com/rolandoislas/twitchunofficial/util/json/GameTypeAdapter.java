@@ -0,0 +1,54 @@
+package com.rolandoislas.twitchunofficial.util.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Game;
+
+import java.io.IOException;
+
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextLong;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextString;
+
+/**
+ * Reads and writes games without reflection
+ */
+class GameTypeAdapter extends TypeAdapter<Game> {
+    @Override
+    public void write(JsonWriter out, Game game) throws IOException {
+        out.beginObject();
+        out.name("id").value(game.getId());
+        out.name("name").value(game.getName());
+        out.name("box_art_url").value(game.getBoxArtUrl());
+        out.name("viewers").value(game.getViewers());
+        out.endObject();
+    }
+
+    @Override
+    public Game read(JsonReader in) throws IOException {
+        Game game = new Game();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    game.setId(nextString(in));
+                    break;
+                case "name":
+                    game.setName(nextString(in));
+                    break;
+                case "box_art_url":
+                    game.setBoxArtUrl(nextString(in));
+                    break;
+                case "viewers":
+                    Long viewers = nextLong(in);
+                    if (viewers != null)
+                        game.setViewers((long) viewers);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return game;
+    }
+}
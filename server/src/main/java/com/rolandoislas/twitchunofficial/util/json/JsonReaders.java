@@ -0,0 +1,128 @@
+package com.rolandoislas.twitchunofficial.util.json;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read values the same way Gson's built in adapters do
+ * Null values are returned as null, so callers can keep the default value of a field.
+ */
+class JsonReaders {
+    /**
+     * Read a string - numbers and booleans are read as their text
+     * @param in reader
+     * @return string or null
+     */
+    @Nullable
+    static String nextString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN)
+            return Boolean.toString(in.nextBoolean());
+        return in.nextString();
+    }
+
+    /**
+     * Read a long - numeric strings are accepted
+     * @param in reader
+     * @return long or null
+     */
+    @Nullable
+    static Long nextLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextLong();
+        }
+        catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Read an int - numeric strings are accepted
+     * @param in reader
+     * @return int or null
+     */
+    @Nullable
+    static Integer nextInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextInt();
+        }
+        catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Read a boolean - strings are parsed with Boolean.parseBoolean
+     * @param in reader
+     * @return boolean or null
+     */
+    @Nullable
+    static Boolean nextBoolean(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING)
+            return Boolean.parseBoolean(in.nextString());
+        return in.nextBoolean();
+    }
+
+    /**
+     * Read an array of strings
+     * @param in reader
+     * @return list or null
+     */
+    @Nullable
+    static ArrayList<String> nextStringList(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ArrayList<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext())
+            values.add(nextString(in));
+        in.endArray();
+        return values;
+    }
+
+    /**
+     * Read an array with an adapter for its elements
+     * @param in reader
+     * @param element reads one element
+     * @return list or null
+     */
+    @Nullable
+    static <T> List<T> nextList(JsonReader in, TypeAdapter<T> element) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext())
+            values.add(element.read(in));
+        in.endArray();
+        return values;
+    }
+}
@@ -0,0 +1,42 @@
+package com.rolandoislas.twitchunofficial.util.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.rolandoislas.twitchunofficial.data.model.StreamQuality;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Follow;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.FollowList;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Game;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Pagination;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Stream;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.User;
+
+/**
+ * Provides hand written type adapters for the models that are read and written on every request
+ * The adapters read and write the same json as the reflective adapters, but do not look up fields through reflection.
+ * Other types fall through to the default adapters.
+ */
+public class ModelTypeAdapterFactory implements TypeAdapterFactory {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        TypeAdapter<?> adapter;
+        if (rawType == Stream.class)
+            adapter = new StreamTypeAdapter();
+        else if (rawType == User.class)
+            adapter = new UserTypeAdapter();
+        else if (rawType == Game.class)
+            adapter = new GameTypeAdapter();
+        else if (rawType == Follow.class)
+            adapter = new FollowTypeAdapter();
+        else if (rawType == FollowList.class)
+            adapter = new FollowListTypeAdapter(gson.getAdapter(Follow.class), gson.getAdapter(Pagination.class));
+        else if (rawType == StreamQuality.class)
+            adapter = new StreamQualityTypeAdapter();
+        else
+            return null;
+        return (TypeAdapter<T>) adapter.nullSafe();
+    }
+}
@@ -0,0 +1,111 @@
+package com.rolandoislas.twitchunofficial.util.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.rolandoislas.twitchunofficial.data.model.StreamQuality;
+
+import java.io.IOException;
+
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextBoolean;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextInt;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextLong;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextString;
+
+/**
+ * Reads and writes stream qualities without reflection
+ * Missing values are left null or false, the same as a reflective read that does not run the constructor.
+ */
+class StreamQualityTypeAdapter extends TypeAdapter<StreamQuality> {
+    @Override
+    public void write(JsonWriter out, StreamQuality quality) throws IOException {
+        out.beginObject();
+        out.name("id").value(quality.getId());
+        out.name("model").value(quality.getModel());
+        out.name("bitrate").value(quality.getBitrate());
+        out.name("comment").value(quality.getComment());
+        out.name("240p30").value(quality.get240p30());
+        out.name("240p60").value(quality.get240p60());
+        out.name("480p30").value(quality.get480p30());
+        out.name("480p60").value(quality.get480p60());
+        out.name("720p30").value(quality.get720p30());
+        out.name("720p60").value(quality.get720p60());
+        out.name("1080p30").value(quality.get1080p30());
+        out.name("1080p60").value(quality.get1080p60());
+        out.name("only_source_60").value(quality.getOnlySource60());
+        out.endObject();
+    }
+
+    @Override
+    public StreamQuality read(JsonReader in) throws IOException {
+        long id = 0;
+        String model = null;
+        int bitrate = 0;
+        String comment = null;
+        boolean[] resolutions = new boolean[9];
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "id":
+                    Long idValue = nextLong(in);
+                    id = idValue != null ? idValue : 0;
+                    break;
+                case "model":
+                    model = nextString(in);
+                    break;
+                case "bitrate":
+                    Integer bitrateValue = nextInt(in);
+                    bitrate = bitrateValue != null ? bitrateValue : 0;
+                    break;
+                case "comment":
+                    comment = nextString(in);
+                    break;
+                default:
+                    int resolutionIndex = getResolutionIndex(name);
+                    if (resolutionIndex < 0) {
+                        in.skipValue();
+                        break;
+                    }
+                    Boolean enabled = nextBoolean(in);
+                    resolutions[resolutionIndex] = enabled != null && enabled;
+            }
+        }
+        in.endObject();
+        StreamQuality quality = new StreamQuality(model, bitrate, comment, resolutions[0], resolutions[1],
+                resolutions[2], resolutions[3], resolutions[4], resolutions[5], resolutions[6], resolutions[7],
+                resolutions[8]);
+        quality.setId(id);
+        return quality;
+    }
+
+    /**
+     * Get the constructor argument position of a resolution flag
+     * @param name json name
+     * @return index or -1 if the name is not a resolution flag
+     */
+    private static int getResolutionIndex(String name) {
+        switch (name) {
+            case "240p30":
+                return 0;
+            case "240p60":
+                return 1;
+            case "480p30":
+                return 2;
+            case "480p60":
+                return 3;
+            case "720p30":
+                return 4;
+            case "720p60":
+                return 5;
+            case "1080p30":
+                return 6;
+            case "1080p60":
+                return 7;
+            case "only_source_60":
+                return 8;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.rolandoislas.twitchunofficial.util.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.Stream;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.UserName;
+
+import java.io.IOException;
+
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextBoolean;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextLong;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextString;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextStringList;
+
+/**
+ * Reads and writes streams without reflection
+ * Helix sends user_name as the display name string. It is skipped, because the user name of a stream is an object
+ * that is filled in from the user cache.
+ */
+class StreamTypeAdapter extends TypeAdapter<Stream> {
+    @Override
+    public void write(JsonWriter out, Stream stream) throws IOException {
+        out.beginObject();
+        out.name("id").value(stream.getId());
+        out.name("user_id").value(stream.getUserId());
+        out.name("game_id").value(stream.getGameId());
+        if (stream.getCommunityIds() != null) {
+            out.name("community_id").beginArray();
+            for (String communityId : stream.getCommunityIds())
+                out.value(communityId);
+            out.endArray();
+        }
+        out.name("type").value(stream.getType());
+        out.name("title").value(stream.getTitle());
+        out.name("viewer_count").value(stream.getViewerCount());
+        out.name("started_at").value(stream.getStartedAt());
+        out.name("language").value(stream.getLanguage());
+        out.name("thumbnail_url").value(stream.getThumbnailUrl());
+        out.name("description").value(stream.getDescription());
+        out.name("created_at").value(stream.getCreatedAt());
+        out.name("published_at").value(stream.getPublishedAt());
+        out.name("url").value(stream.getUrl());
+        out.name("viewable").value(stream.getViewable());
+        out.name("view_count").value(stream.getViewCount());
+        out.name("duration").value(stream.getDuration());
+        if (stream.getUserName() != null) {
+            out.name("user_name").beginObject();
+            out.name("login").value(stream.getUserName().getLogin());
+            out.name("display_name").value(stream.getUserName().getDisplayName());
+            out.endObject();
+        }
+        out.name("game_name").value(stream.getGameName());
+        out.name("duration_seconds").value(stream.getDurationSeconds());
+        out.name("online").value(stream.isOnline());
+        out.name("encrypted").value(stream.isEncrypted());
+        out.endObject();
+    }
+
+    @Override
+    public Stream read(JsonReader in) throws IOException {
+        Stream stream = new Stream();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    stream.setId(nextString(in));
+                    break;
+                case "user_id":
+                    stream.setUserId(nextString(in));
+                    break;
+                case "game_id":
+                    stream.setGameId(nextString(in));
+                    break;
+                case "community_id":
+                    stream.setCommunityIds(nextStringList(in));
+                    break;
+                case "type":
+                    stream.setType(nextString(in));
+                    break;
+                case "title":
+                    stream.setTitle(nextString(in));
+                    break;
+                case "viewer_count":
+                    Long viewerCount = nextLong(in);
+                    if (viewerCount != null)
+                        stream.setViewerCount(viewerCount);
+                    break;
+                case "started_at":
+                    stream.setStartedAt(nextString(in));
+                    break;
+                case "language":
+                    stream.setLanguage(nextString(in));
+                    break;
+                case "thumbnail_url":
+                    stream.setThumbnailUrl(nextString(in));
+                    break;
+                case "description":
+                    stream.setDescription(nextString(in));
+                    break;
+                case "created_at":
+                    stream.setCreatedAt(nextString(in));
+                    break;
+                case "published_at":
+                    stream.setPublishedAt(nextString(in));
+                    break;
+                case "url":
+                    stream.setUrl(nextString(in));
+                    break;
+                case "viewable":
+                    stream.setViewable(nextString(in));
+                    break;
+                case "view_count":
+                    Long viewCount = nextLong(in);
+                    if (viewCount != null)
+                        stream.setViewCount(viewCount);
+                    break;
+                case "duration":
+                    stream.setDuration(nextString(in));
+                    break;
+                case "user_name":
+                    if (in.peek() == JsonToken.BEGIN_OBJECT)
+                        stream.setUserName(readUserName(in));
+                    else
+                        in.skipValue();
+                    break;
+                case "game_name":
+                    stream.setGameName(nextString(in));
+                    break;
+                case "duration_seconds":
+                    Long durationSeconds = nextLong(in);
+                    if (durationSeconds != null)
+                        stream.setDurationSeconds(durationSeconds);
+                    break;
+                case "online":
+                    Boolean online = nextBoolean(in);
+                    if (online != null)
+                        stream.setOnline(online);
+                    break;
+                case "encrypted":
+                    Boolean encrypted = nextBoolean(in);
+                    if (encrypted != null)
+                        stream.setEncrypted(encrypted);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return stream;
+    }
+
+    /**
+     * Read a user name object
+     * @param in reader positioned at the object
+     * @return user name
+     */
+    private static UserName readUserName(JsonReader in) throws IOException {
+        UserName userName = new UserName();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "login":
+                    userName.setLogin(nextString(in));
+                    break;
+                case "display_name":
+                    userName.setDisplayName(nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return userName;
+    }
+}
@@ -0,0 +1,85 @@
+package com.rolandoislas.twitchunofficial.util.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.rolandoislas.twitchunofficial.data.model.json.twitch.helix.User;
+
+import java.io.IOException;
+
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextBoolean;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextLong;
+import static com.rolandoislas.twitchunofficial.util.json.JsonReaders.nextString;
+
+/**
+ * Reads and writes users without reflection
+ */
+class UserTypeAdapter extends TypeAdapter<User> {
+    @Override
+    public void write(JsonWriter out, User user) throws IOException {
+        out.beginObject();
+        out.name("id").value(user.getId());
+        out.name("login").value(user.getLogin());
+        out.name("display_name").value(user.getDisplayName());
+        out.name("type").value(user.getType());
+        out.name("broadcaster_type").value(user.getBroadcasterType());
+        out.name("description").value(user.getDescription());
+        out.name("profile_image_url").value(user.getProfileImageUrl());
+        out.name("offline_image_url").value(user.getOfflineImageUrl());
+        out.name("view_count").value(user.getViewCount());
+        out.name("email").value(user.getEmail());
+        out.name("exists").value(user.isExists());
+        out.endObject();
+    }
+
+    @Override
+    public User read(JsonReader in) throws IOException {
+        User user = new User();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    user.setId(nextString(in));
+                    break;
+                case "login":
+                    user.setLogin(nextString(in));
+                    break;
+                case "display_name":
+                    user.setDisplayName(nextString(in));
+                    break;
+                case "type":
+                    user.setType(nextString(in));
+                    break;
+                case "broadcaster_type":
+                    user.setBroadcasterType(nextString(in));
+                    break;
+                case "description":
+                    user.setDescription(nextString(in));
+                    break;
+                case "profile_image_url":
+                    user.setProfileImageUrl(nextString(in));
+                    break;
+                case "offline_image_url":
+                    user.setOfflineImageUrl(nextString(in));
+                    break;
+                case "view_count":
+                    Long viewCount = nextLong(in);
+                    if (viewCount != null)
+                        user.setViewCount(viewCount);
+                    break;
+                case "email":
+                    user.setEmail(nextString(in));
+                    break;
+                case "exists":
+                    Boolean exists = nextBoolean(in);
+                    if (exists != null)
+                        user.setExists(exists);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return user;
+    }
+}